@@ -1,18 +1,99 @@
 package xyz.verarr.spreadspawnpoints;
 
+import dev.architectury.event.events.common.PlayerEvent;
 import dev.architectury.injectables.annotations.ExpectPlatform;
 import net.minecraft.command.CommandSource;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Map.entry;
+
 public class PermissionsService {
     public static final String PERMISSION_ROOT = SpreadSpawnPoints.MOD_ID;
 
-    @ExpectPlatform
+    /**
+     * Every permission checked by this mod, relative to
+     * {@link #PERMISSION_ROOT}, with its default permission level. Platforms
+     * register these once at startup.
+     */
+    public static final Map<String, Integer> PERMISSIONS = Map.ofEntries(
+            entry("command.respawn", 2),
+            entry("command.respawn.self", 2),
+            entry("command.respawn.others", 2),
+            entry("command.spawnpoints", 2),
+            entry("command.spawnpoints.generator", 2),
+            entry("command.spawnpoints.generator.query", 2),
+            entry("command.spawnpoints.generator.set", 2),
+            entry("command.spawnpoints.generator.modify", 2),
+            entry("command.spawnpoints.reset", 2),
+            entry("command.spawnpoints.reset.all", 2),
+            entry("command.spawnpoints.exclude", 2),
+            entry("command.spawnpoints.structures", 2),
+            entry("command.spawnpoints.validation", 2),
+            entry("command.spawnpoints.eviction", 2),
+            entry("command.spawnpoints.registry", 4),
+            entry("command.spawnpoints.export", 2),
+            entry("command.spawnpoints.import", 2),
+            entry("command.spawnpoints.nearest", 2)
+    );
+
+    /**
+     * How long a player's permission decision is reused. Brigadier checks
+     * permissions on every command tree send and tab completion, so even a
+     * short time saves most lookups.
+     */
+    private static final long DECISION_TTL = TimeUnit.SECONDS.toNanos(5);
+
+    private record Decision(boolean allowed, long expiresAt) {}
+
+    private static final Map<String, String> nodeNames = new ConcurrentHashMap<>();
+    private static final Map<UUID, Map<String, Decision>> decisions = new ConcurrentHashMap<>();
+
+    /**
+     * @param permission permission relative to {@link #PERMISSION_ROOT}
+     * @return the full permission node name
+     */
+    public static String getNodeName(@NotNull String permission) {
+        return nodeNames.computeIfAbsent(permission, p -> PERMISSION_ROOT + "." + p);
+    }
+
+    public static void registerEvents() {
+        PlayerEvent.PLAYER_QUIT.register(player -> invalidate(player.getUuid()));
+    }
+
+    /**
+     * Forget all cached permission decisions of a player, e.g. because their
+     * permissions changed.
+     *
+     * @param player UUID of the player
+     */
+    public static void invalidate(@NotNull UUID player) {
+        decisions.remove(player);
+    }
+
     public static boolean hasPermission(@NotNull ServerPlayerEntity player,
                                         @NotNull String permission,
                                         int defaultPermissionLevel) {
+        Map<String, Decision> playerDecisions = decisions.computeIfAbsent(player.getUuid(), uuid -> new ConcurrentHashMap<>());
+        long now = System.nanoTime();
+        Decision decision = playerDecisions.get(permission);
+        if (decision == null || now - decision.expiresAt() >= 0) {
+            decision = new Decision(checkPermission(player, getNodeName(permission), defaultPermissionLevel), now + DECISION_TTL);
+            playerDecisions.put(permission, decision);
+        }
+        return decision.allowed();
+    }
+
+    @ExpectPlatform
+    public static boolean checkPermission(@NotNull ServerPlayerEntity player,
+                                          @NotNull String permissionNode,
+                                          int defaultPermissionLevel) {
         throw new AssertionError();
     }
 
@@ -1,13 +1,22 @@
 package xyz.verarr.spreadspawnpoints;
 
+import dev.architectury.event.events.common.ChunkEvent;
 import dev.architectury.event.events.common.CommandRegistrationEvent;
+import dev.architectury.event.events.common.LifecycleEvent;
+import dev.architectury.event.events.common.PlayerEvent;
+import dev.architectury.event.events.common.TickEvent;
 import net.minecraft.util.Identifier;
+import net.minecraft.world.chunk.ChunkStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import xyz.verarr.spreadspawnpoints.commands.RespawnCommand;
 import xyz.verarr.spreadspawnpoints.commands.SpawnpointsCommand;
 import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointGeneratorManager;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointManager;
+import xyz.verarr.spreadspawnpoints.spawnpoints.generators.BlueNoiseSpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.spawnpoints.generators.ClusterSpawnPointGenerator;
 import xyz.verarr.spreadspawnpoints.spawnpoints.generators.GridSpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.spawnpoints.generators.HexagonalSpawnPointGenerator;
 import xyz.verarr.spreadspawnpoints.spawnpoints.generators.RandomSpawnPointGenerator;
 import xyz.verarr.spreadspawnpoints.spawnpoints.generators.SpringSpawnPointGenerator;
 import xyz.verarr.spreadspawnpoints.spawnpoints.generators.VanillaSpawnPointGenerator;
@@ -23,6 +32,8 @@ public final class SpreadSpawnPoints {
         LOGGER.info("Registered Spawn Point Generators!");
 
         initCommands();
+        initEvents();
+        PermissionsService.registerEvents();
     }
 
     static void registerSpawnPointGenerators() {
@@ -42,6 +53,42 @@ public final class SpreadSpawnPoints {
                 Identifier.of(MOD_ID, "spring"),
                 SpringSpawnPointGenerator.class
         );
+        SpawnPointGeneratorManager.registerSpawnPointGenerator(
+                Identifier.of(MOD_ID, "hexagonal"),
+                HexagonalSpawnPointGenerator.class
+        );
+        SpawnPointGeneratorManager.registerSpawnPointGenerator(
+                Identifier.of(MOD_ID, "blue_noise"),
+                BlueNoiseSpawnPointGenerator.class
+        );
+        SpawnPointGeneratorManager.registerSpawnPointGenerator(
+                Identifier.of(MOD_ID, "cluster"),
+                ClusterSpawnPointGenerator.class
+        );
+    }
+
+    static void initEvents() {
+        PlayerEvent.PLAYER_JOIN.register(SpawnPointManager::onPlayerSeen);
+        PlayerEvent.PLAYER_QUIT.register(SpawnPointManager::onPlayerSeen);
+        TickEvent.SERVER_POST.register(server -> server.getWorlds().forEach(world -> {
+            SpawnPointManager spawnPointManager = SpawnPointManager.getLoadedInstance(world);
+            if (spawnPointManager != null) {
+                spawnPointManager.tickRegistry();
+                spawnPointManager.tickEviction();
+            }
+        }));
+        LifecycleEvent.SERVER_STOPPING.register(server -> server.getWorlds().forEach(world -> {
+            SpawnPointManager spawnPointManager = SpawnPointManager.getLoadedInstance(world);
+            if (spawnPointManager != null)
+                spawnPointManager.closeRegistry();
+        }));
+        ChunkEvent.SAVE_DATA.register((chunk, world, nbt) -> {
+            // proto-chunks saved before their surface exists can't be validated cheaply
+            if (world == null || !chunk.getStatus().isAtLeast(ChunkStatus.SURFACE)) return;
+            SpawnPointManager spawnPointManager = SpawnPointManager.getLoadedInstance(world);
+            if (spawnPointManager != null)
+                spawnPointManager.generatorManager.generatedChunks.add(chunk.getPos());
+        });
     }
 
     static void initCommands() {
@@ -1,28 +1,53 @@
 package xyz.verarr.spreadspawnpoints.commands;
 
+import com.mojang.authlib.GameProfile;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.builder.RequiredArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import net.minecraft.command.EntitySelector;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.argument.ColumnPosArgumentType;
 import net.minecraft.command.argument.EntityArgumentType;
 import net.minecraft.command.argument.IdentifierArgumentType;
 import net.minecraft.command.argument.NbtCompoundArgumentType;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.registry.RegistryKeys;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.UserCache;
+import net.minecraft.util.math.ColumnPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
 import xyz.verarr.spreadspawnpoints.PermissionsService;
+import xyz.verarr.spreadspawnpoints.spawnpoints.EvictionPolicy;
+import xyz.verarr.spreadspawnpoints.spawnpoints.ExclusionZones;
+import xyz.verarr.spreadspawnpoints.spawnpoints.GeneratedTerrainMode;
+import xyz.verarr.spreadspawnpoints.spawnpoints.ScanStrategy;
 import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointManager;
 import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointGeneratorManager;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointTransfer;
+import xyz.verarr.spreadspawnpoints.spawnpoints.StructureFilter;
+import xyz.verarr.spreadspawnpoints.spawnpoints.ValidationMode;
+import xyz.verarr.spreadspawnpoints.spawnpoints.ValidationPipeline;
+import xyz.verarr.spreadspawnpoints.spawnpoints.registry.SpawnPointRegistry;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static net.minecraft.server.command.CommandManager.argument;
 import static net.minecraft.server.command.CommandManager.literal;
@@ -69,7 +94,7 @@ public class SpawnpointsCommand {
         /**
          * Command for setting (replacing) the spawnpoint generator
          *
-         * @see SpawnPointGeneratorManager#setSpawnPointGenerator(Identifier)
+         * @see SpawnPointManager#setSpawnPointGenerator(Identifier, boolean)
          * @see SpawnPointGeneratorManager#registerSpawnPointGenerator(Identifier, Class)
          */
         private static class SetCommand {
@@ -93,12 +118,11 @@ public class SpawnpointsCommand {
 
                     final ServerWorld serverWorld = context.getSource().getWorld();
                     final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(serverWorld);
-                    spawnPointManager.generatorManager.setSpawnPointGenerator(identifier);
+                    spawnPointManager.setSpawnPointGenerator(identifier, true);
                     context.getSource().sendFeedback(() -> Text.literal(String.format(
                             "Spawn point generator set to %s",
                             identifier.toString()
                     )), true);
-                    spawnPointManager.resetSpawnPoints();
                     return Command.SINGLE_SUCCESS;
                 } catch (Exception e) {
                     throw new SimpleCommandExceptionType(Text.literal(e.toString())).create();
@@ -108,7 +132,8 @@ public class SpawnpointsCommand {
             /**
              * Sets the generator to the specified one and resets all
              * spawnpoints according to reset argument
-             * ({@link SetCommand#resetArgument}).
+             * ({@link SetCommand#resetArgument}). Kept spawnpoints are
+             * loaded into the new generator.
              * <p>
              * Executed when reset argument ({@link SetCommand#resetArgument})
              * is present.
@@ -125,13 +150,11 @@ public class SpawnpointsCommand {
                     }
 
                     final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
-                    spawnPointManager.generatorManager.setSpawnPointGenerator(identifier);
+                    spawnPointManager.setSpawnPointGenerator(identifier, BoolArgumentType.getBool(context, "resetSpawnPoints"));
                     context.getSource().sendFeedback(() -> Text.literal(String.format(
                             "Spawn point generator set to %s",
                             identifier.toString()
                     )), true);
-                    if (BoolArgumentType.getBool(context, "resetSpawnPoints"))
-                        spawnPointManager.resetSpawnPoints();
                     return Command.SINGLE_SUCCESS;
                 } catch (Exception e) {
                     throw new SimpleCommandExceptionType(Text.literal(e.toString())).create();
@@ -189,6 +212,7 @@ public class SpawnpointsCommand {
                 final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
                 try {
                     spawnPointManager.generatorManager.modifyFromNbtPartial(nbt);
+                    spawnPointManager.markDirty();
                 } catch (IllegalArgumentException e) {
                     throw new SimpleCommandExceptionType(Text.literal("Illegal data passed to generator: " + e.getMessage())).create();
                 }
@@ -289,6 +313,620 @@ public class SpawnpointsCommand {
                         .then(argumentBuilder);
     }
 
+    /**
+     * Commands for managing areas in which no spawnpoints are generated
+     *
+     * @see ExclusionZones
+     */
+    private static class ExcludeCommand {
+        /**
+         * Adds a rectangular exclusion zone between two corners.
+         */
+        private static int executeAddRectangle(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final String name = StringArgumentType.getString(context, "name");
+            final ColumnPos from = ColumnPosArgumentType.getColumnPos(context, "from");
+            final ColumnPos to = ColumnPosArgumentType.getColumnPos(context, "to");
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            spawnPointManager.generatorManager.exclusionZones.add(new ExclusionZones.Rectangle(name, new ExclusionZones.Box(
+                    Math.min(from.x(), to.x()), Math.min(from.z(), to.z()),
+                    Math.max(from.x(), to.x()), Math.max(from.z(), to.z())
+            )));
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal("Added exclusion zone %s.".formatted(name)), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Adds a polygonal exclusion zone from a list of points formatted as
+         * <code>x,z x,z x,z ...</code>.
+         */
+        private static int executeAddPolygon(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final String name = StringArgumentType.getString(context, "name");
+            final String[] pointStrings = StringArgumentType.getString(context, "points").trim().split("\\s+");
+            final int[] points = new int[pointStrings.length * 2];
+            try {
+                for (int i = 0; i < pointStrings.length; i++) {
+                    String[] coordinates = pointStrings[i].split(",");
+                    if (coordinates.length != 2)
+                        throw new NumberFormatException();
+                    points[i * 2] = Integer.parseInt(coordinates[0]);
+                    points[i * 2 + 1] = Integer.parseInt(coordinates[1]);
+                }
+                final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+                spawnPointManager.generatorManager.exclusionZones.add(new ExclusionZones.Polygon(name, points));
+                spawnPointManager.markDirty();
+            } catch (NumberFormatException e) {
+                throw new SimpleCommandExceptionType(Text.literal("Points must be formatted as x,z x,z x,z ...")).create();
+            } catch (IllegalArgumentException e) {
+                throw new SimpleCommandExceptionType(Text.literal(e.getMessage())).create();
+            }
+            context.getSource().sendFeedback(() -> Text.literal("Added exclusion zone %s.".formatted(name)), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        private static int executeRemove(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final String name = StringArgumentType.getString(context, "name");
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            if (!spawnPointManager.generatorManager.exclusionZones.remove(name))
+                throw new SimpleCommandExceptionType(Text.literal("There is no exclusion zone named %s.".formatted(name))).create();
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal("Removed exclusion zone %s.".formatted(name)), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        private static int executeList(CommandContext<ServerCommandSource> context) {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            final Collection<ExclusionZones.Zone> zones = spawnPointManager.generatorManager.exclusionZones.getZones();
+            if (zones.isEmpty()) {
+                context.getSource().sendFeedback(() -> Text.literal("There are no exclusion zones."), false);
+                return 0;
+            }
+            context.getSource().sendFeedback(() -> Text.literal("There are %d exclusion zones:".formatted(zones.size())), false);
+            zones.forEach(zone -> context.getSource().sendFeedback(() -> Text.literal(zone.toString()), false));
+            return zones.size();
+        }
+
+        /**
+         * Command tree for <code>spawnpoints exclude add</code> command
+         */
+        private static final LiteralArgumentBuilder<ServerCommandSource> addCommand =
+                literal("add")
+                        .then(literal("rectangle")
+                                .then(argument("name", StringArgumentType.word())
+                                        .then(argument("from", ColumnPosArgumentType.columnPos())
+                                                .then(argument("to", ColumnPosArgumentType.columnPos())
+                                                        .executes(ExcludeCommand::executeAddRectangle)))))
+                        .then(literal("polygon")
+                                .then(argument("name", StringArgumentType.word())
+                                        .then(argument("points", StringArgumentType.greedyString())
+                                                .executes(ExcludeCommand::executeAddPolygon))));
+
+        /**
+         * Command tree for <code>spawnpoints exclude remove</code> command
+         */
+        private static final LiteralArgumentBuilder<ServerCommandSource> removeCommand =
+                literal("remove")
+                        .then(argument("name", StringArgumentType.word())
+                                .suggests((context, builder) -> CommandSource.suggestMatching(
+                                        SpawnPointManager.getInstance(context.getSource().getWorld())
+                                                .generatorManager.exclusionZones.getZones().stream()
+                                                .map(ExclusionZones.Zone::name),
+                                        builder))
+                                .executes(ExcludeCommand::executeRemove));
+
+        /**
+         * Command tree for <code>spawnpoints exclude</code> command
+         */
+        public static final LiteralArgumentBuilder<ServerCommandSource> command =
+                literal("exclude")
+                        .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints.exclude", 2))
+                        .then(addCommand)
+                        .then(removeCommand)
+                        .then(literal("list").executes(ExcludeCommand::executeList));
+    }
+
+    /**
+     * Commands for managing which structures spawnpoints keep away from
+     *
+     * @see StructureFilter
+     */
+    private static class StructuresCommand {
+        private static int executeAdd(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final Identifier structureSet = IdentifierArgumentType.getIdentifier(context, "structureSet");
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            try {
+                if (!spawnPointManager.generatorManager.structureFilter.add(structureSet))
+                    throw new SimpleCommandExceptionType(Text.literal("Structure set %s is already avoided.".formatted(structureSet))).create();
+            } catch (IllegalArgumentException e) {
+                throw new SimpleCommandExceptionType(Text.literal(e.getMessage())).create();
+            }
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal("Spawnpoints now avoid %s.".formatted(structureSet)), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        private static int executeRemove(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final Identifier structureSet = IdentifierArgumentType.getIdentifier(context, "structureSet");
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            if (!spawnPointManager.generatorManager.structureFilter.remove(structureSet))
+                throw new SimpleCommandExceptionType(Text.literal("Structure set %s is not avoided.".formatted(structureSet))).create();
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal("Spawnpoints no longer avoid %s.".formatted(structureSet)), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        private static int executeRadius(CommandContext<ServerCommandSource> context) {
+            final int radius = IntegerArgumentType.getInteger(context, "chunks");
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            spawnPointManager.generatorManager.structureFilter.setRadius(radius);
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal("Spawnpoints now keep %d chunks away from avoided structures.".formatted(radius)), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        private static int executeList(CommandContext<ServerCommandSource> context) {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            final StructureFilter structureFilter = spawnPointManager.generatorManager.structureFilter;
+            if (!structureFilter.isEnabled()) {
+                context.getSource().sendFeedback(() -> Text.literal("No structures are avoided."), false);
+                return 0;
+            }
+            context.getSource().sendFeedback(() -> Text.literal("Spawnpoints keep %d chunks away from: %s".formatted(
+                    structureFilter.getRadius(),
+                    String.join(", ", structureFilter.getStructureSets().stream().map(Identifier::toString).toList())
+            )), false);
+            return structureFilter.getStructureSets().size();
+        }
+
+        /**
+         * Structure set identifier argument, suggesting all registered
+         * structure sets.
+         */
+        private static RequiredArgumentBuilder<ServerCommandSource, Identifier> structureSetArgument() {
+            return argument("structureSet", IdentifierArgumentType.identifier())
+                    .suggests((context, builder) -> CommandSource.suggestIdentifiers(
+                            context.getSource().getRegistryManager().get(RegistryKeys.STRUCTURE_SET).getIds(),
+                            builder));
+        }
+
+        /**
+         * Command tree for <code>spawnpoints structures</code> command
+         */
+        public static final LiteralArgumentBuilder<ServerCommandSource> command =
+                literal("structures")
+                        .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints.structures", 2))
+                        .then(literal("add").then(structureSetArgument().executes(StructuresCommand::executeAdd)))
+                        .then(literal("remove").then(structureSetArgument().executes(StructuresCommand::executeRemove)))
+                        .then(literal("radius").then(argument("chunks", IntegerArgumentType.integer(0, 32))
+                                .executes(StructuresCommand::executeRadius)))
+                        .then(literal("list").executes(StructuresCommand::executeList));
+    }
+
+    /**
+     * Commands for inspecting spawnpoint validation
+     *
+     * @see ValidationPipeline
+     */
+    private static class ValidationCommand {
+        /**
+         * Prints the statistics of every validation stage, in the order they
+         * are currently run in.
+         */
+        private static int executeStats(CommandContext<ServerCommandSource> context) {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            final List<ValidationPipeline.Stage> stages = spawnPointManager.generatorManager.validationPipeline.getStages();
+            context.getSource().sendFeedback(() -> Text.literal("Validation stages, in order:"), false);
+            for (ValidationPipeline.Stage stage : stages) {
+                context.getSource().sendFeedback(() -> Text.literal("%s: %d calls, %d rejected (%.1f%%), %.1f µs per call".formatted(
+                        stage.getName(),
+                        stage.getCalls(),
+                        stage.getRejections(),
+                        stage.getCalls() == 0 ? 0.0 : 100.0 * stage.getRejections() / stage.getCalls(),
+                        stage.getCostPerCall() / 1000
+                )), false);
+            }
+            return stages.size();
+        }
+
+        /**
+         * Prints the current validation mode.
+         */
+        private static int executeMode(CommandContext<ServerCommandSource> context) {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            context.getSource().sendFeedback(() -> Text.literal("Validation mode is %s".formatted(
+                    spawnPointManager.generatorManager.getValidationMode().getName()
+            )), false);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Sets the validation mode.
+         *
+         * @see ValidationMode
+         */
+        private static int executeSetMode(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final ValidationMode mode = ValidationMode.byName(StringArgumentType.getString(context, "mode"));
+            if (mode == null) {
+                throw new SimpleCommandExceptionType(Text.literal("Unknown validation mode")).create();
+            }
+
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            spawnPointManager.generatorManager.setValidationMode(mode);
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal("Validation mode set to %s".formatted(mode.getName())), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Prints the current scan strategy.
+         */
+        private static int executeScan(CommandContext<ServerCommandSource> context) {
+            final SpawnPointGeneratorManager generatorManager = SpawnPointManager.getInstance(context.getSource().getWorld()).generatorManager;
+            context.getSource().sendFeedback(() -> Text.literal(generatorManager.getScanStrategy() == ScanStrategy.CHUNKED
+                    ? "Scan strategy is chunked, checking at most %d chunks".formatted(generatorManager.getScanMaxChunks())
+                    : "Scan strategy is vanilla"
+            ), false);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Sets the scan strategy.
+         *
+         * @see ScanStrategy
+         */
+        private static int executeSetScan(CommandContext<ServerCommandSource> context, ScanStrategy strategy, int maxChunks) {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            spawnPointManager.generatorManager.setScanStrategy(strategy, maxChunks);
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal("Scan strategy set to %s".formatted(strategy.getName())), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Prints whether candidates should be in generated chunks, and how
+         * many chunks are known to be generated.
+         */
+        private static int executeGenerated(CommandContext<ServerCommandSource> context) {
+            final SpawnPointGeneratorManager generatorManager = SpawnPointManager.getInstance(context.getSource().getWorld()).generatorManager;
+            context.getSource().sendFeedback(() -> Text.literal("Generated terrain mode is %s, %s".formatted(
+                    generatorManager.getGeneratedTerrainMode().getName(),
+                    generatorManager.generatedChunks.isReady()
+                            ? "%d chunks are generated".formatted(generatorManager.generatedChunks.size())
+                            : "the generated chunks have not been indexed yet"
+            )), false);
+            return generatorManager.generatedChunks.size();
+        }
+
+        /**
+         * Sets whether candidates should be in generated chunks.
+         *
+         * @see GeneratedTerrainMode
+         */
+        private static int executeSetGenerated(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final GeneratedTerrainMode mode = GeneratedTerrainMode.byName(StringArgumentType.getString(context, "mode"));
+            if (mode == null) {
+                throw new SimpleCommandExceptionType(Text.literal("Unknown generated terrain mode")).create();
+            }
+
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            spawnPointManager.generatorManager.setGeneratedTerrainMode(mode);
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal("Generated terrain mode set to %s".formatted(mode.getName())), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Command tree for <code>spawnpoints validation</code> command
+         */
+        public static final LiteralArgumentBuilder<ServerCommandSource> command =
+                literal("validation")
+                        .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints.validation", 2))
+                        .then(literal("stats").executes(ValidationCommand::executeStats))
+                        .then(literal("mode")
+                                .executes(ValidationCommand::executeMode)
+                                .then(argument("mode", StringArgumentType.word())
+                                        .suggests((context, builder) -> CommandSource.suggestMatching(
+                                                Arrays.stream(ValidationMode.values()).map(ValidationMode::getName), builder))
+                                        .executes(ValidationCommand::executeSetMode)))
+                        .then(literal("scan")
+                                .executes(ValidationCommand::executeScan)
+                                .then(literal("vanilla")
+                                        .executes(context -> executeSetScan(context, ScanStrategy.VANILLA, 0)))
+                                .then(literal("chunked")
+                                        .executes(context -> executeSetScan(context, ScanStrategy.CHUNKED, 4))
+                                        .then(argument("maxChunks", IntegerArgumentType.integer(0))
+                                                .executes(context -> executeSetScan(context, ScanStrategy.CHUNKED,
+                                                        IntegerArgumentType.getInteger(context, "maxChunks"))))))
+                        .then(literal("generated")
+                                .executes(ValidationCommand::executeGenerated)
+                                .then(argument("mode", StringArgumentType.word())
+                                        .suggests((context, builder) -> CommandSource.suggestMatching(
+                                                Arrays.stream(GeneratedTerrainMode.values()).map(GeneratedTerrainMode::getName), builder))
+                                        .executes(ValidationCommand::executeSetGenerated)));
+    }
+
+    /**
+     * Commands for freeing the spawnpoints of players who stopped playing
+     *
+     * @see EvictionPolicy
+     */
+    private static class EvictionCommand {
+        /**
+         * Prints the eviction policy and statistics.
+         */
+        private static int executeReport(CommandContext<ServerCommandSource> context) {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            final int assigned = spawnPointManager.getAssignedSpawnPoints().size();
+            context.getSource().sendFeedback(() -> Text.literal("%s %d spawnpoints are assigned, %d have been evicted.".formatted(
+                    spawnPointManager.evictionPolicy.toString(),
+                    assigned,
+                    spawnPointManager.getEvictedTotal()
+            )), false);
+            return assigned;
+        }
+
+        private static int executeMaxIdleDays(CommandContext<ServerCommandSource> context) {
+            final int days = IntegerArgumentType.getInteger(context, "days");
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            spawnPointManager.evictionPolicy.setMaxIdleDays(days);
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal(spawnPointManager.evictionPolicy.toString()), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        private static int executeMaxPlayers(CommandContext<ServerCommandSource> context) {
+            final int players = IntegerArgumentType.getInteger(context, "players");
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            spawnPointManager.evictionPolicy.setMaxPlayers(players);
+            spawnPointManager.markDirty();
+            context.getSource().sendFeedback(() -> Text.literal(spawnPointManager.evictionPolicy.toString()), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Evicts all stale spawnpoints right away instead of waiting for the
+         * next background sweep.
+         */
+        private static int executeRun(CommandContext<ServerCommandSource> context) {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            final int evicted = spawnPointManager.evictNow();
+            context.getSource().sendFeedback(() -> Text.literal("Evicted %d stale spawnpoints.".formatted(evicted)), true);
+            return evicted;
+        }
+
+        /**
+         * Command tree for <code>spawnpoints eviction</code> command
+         */
+        public static final LiteralArgumentBuilder<ServerCommandSource> command =
+                literal("eviction")
+                        .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints.eviction", 2))
+                        .executes(EvictionCommand::executeReport)
+                        .then(literal("maxIdleDays").then(argument("days", IntegerArgumentType.integer(0))
+                                .executes(EvictionCommand::executeMaxIdleDays)))
+                        .then(literal("maxPlayers").then(argument("players", IntegerArgumentType.integer(0))
+                                .executes(EvictionCommand::executeMaxPlayers)))
+                        .then(literal("run").executes(EvictionCommand::executeRun));
+    }
+
+    /**
+     * Commands for sharing spawnpoints with other servers
+     *
+     * @see SpawnPointRegistry
+     */
+    private static class RegistryCommand {
+        /**
+         * Prints where spawnpoints are shared through, if anywhere.
+         */
+        private static int executeReport(CommandContext<ServerCommandSource> context) {
+            final SpawnPointRegistry registry = SpawnPointManager.getInstance(context.getSource().getWorld()).getRegistry();
+            context.getSource().sendFeedback(() -> Text.literal(registry == null
+                    ? "Spawnpoints are not shared."
+                    : "Spawnpoints are shared through %s".formatted(registry.describe())
+            ), false);
+            return registry == null ? 0 : 1;
+        }
+
+        /**
+         * Shares spawnpoints through a directory, relative to the server
+         * directory unless absolute.
+         */
+        private static int executeShared(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            try {
+                spawnPointManager.setRegistry(Path.of(StringArgumentType.getString(context, "directory")));
+            } catch (IOException | RuntimeException e) {
+                throw new SimpleCommandExceptionType(Text.literal("Failed to open registry: " + e)).create();
+            }
+            context.getSource().sendFeedback(() -> Text.literal("Spawnpoints are shared through %s".formatted(
+                    spawnPointManager.getRegistry().describe()
+            )), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Stops sharing spawnpoints. Local assignments are kept.
+         */
+        private static int executeOff(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            try {
+                spawnPointManager.setRegistry(null);
+            } catch (IOException e) {
+                throw new SimpleCommandExceptionType(Text.literal(e.toString())).create();
+            }
+            context.getSource().sendFeedback(() -> Text.literal("Spawnpoints are no longer shared."), true);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Command tree for <code>spawnpoints registry</code> command
+         */
+        public static final LiteralArgumentBuilder<ServerCommandSource> command =
+                literal("registry")
+                        .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints.registry", 4))
+                        .executes(RegistryCommand::executeReport)
+                        .then(literal("shared").then(argument("directory", StringArgumentType.greedyString())
+                                .executes(RegistryCommand::executeShared)))
+                        .then(literal("off").executes(RegistryCommand::executeOff));
+    }
+
+    /**
+     * Commands for exporting and importing spawnpoints as CSV files in the
+     * <code>spawnpoints</code> directory of the world
+     *
+     * @see SpawnPointTransfer
+     */
+    private static class TransferCommand {
+        private static Path resolveFile(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            try {
+                return SpawnPointTransfer.resolve(context.getSource().getServer(), StringArgumentType.getString(context, "file"));
+            } catch (IllegalArgumentException e) {
+                throw new SimpleCommandExceptionType(Text.literal(e.getMessage())).create();
+            }
+        }
+
+        /**
+         * Reports the result of a transfer on the server thread once it is
+         * done.
+         */
+        private static void report(ServerCommandSource source, CompletableFuture<SpawnPointTransfer.Result> transfer, String verb, Path file) {
+            transfer.whenComplete((result, throwable) -> source.getServer().execute(() -> {
+                if (throwable != null) {
+                    source.sendError(Text.literal("Failed to %s spawnpoints: %s".formatted(verb, throwable.getCause() != null ? throwable.getCause() : throwable)));
+                    return;
+                }
+                source.sendFeedback(() -> Text.literal("%sed %d spawnpoints %s %s in %d ms (%.0f per second)%s".formatted(
+                        verb.substring(0, 1).toUpperCase() + verb.substring(1),
+                        result.spawnPoints(),
+                        verb.equals("export") ? "to" : "from",
+                        file.getFileName(),
+                        result.nanos() / 1_000_000,
+                        result.perSecond(),
+                        result.skipped() > 0 ? ", skipped %d unreadable lines".formatted(result.skipped()) : ""
+                )), true);
+            }));
+        }
+
+        private static int executeExport(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final Path file = resolveFile(context);
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            report(context.getSource(), SpawnPointTransfer.exportTo(spawnPointManager, file), "export", file);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        private static int executeImport(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+            final Path file = resolveFile(context);
+            if (!Files.isRegularFile(file)) {
+                throw new SimpleCommandExceptionType(Text.literal("File does not exist")).create();
+            }
+
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            report(context.getSource(), SpawnPointTransfer.importFrom(spawnPointManager, context.getSource().getServer(), file), "import", file);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        /**
+         * Command tree for <code>spawnpoints export</code> command
+         */
+        public static final LiteralArgumentBuilder<ServerCommandSource> exportCommand =
+                literal("export")
+                        .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints.export", 2))
+                        .then(argument("file", StringArgumentType.greedyString())
+                                .executes(TransferCommand::executeExport));
+
+        /**
+         * Command tree for <code>spawnpoints import</code> command
+         */
+        public static final LiteralArgumentBuilder<ServerCommandSource> importCommand =
+                literal("import")
+                        .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints.import", 2))
+                        .then(argument("file", StringArgumentType.greedyString())
+                                .executes(TransferCommand::executeImport));
+    }
+
+    /**
+     * Commands for finding spawnpoints near a position
+     *
+     * @see SpawnPointManager#nearest(int, int, int)
+     * @see SpawnPointManager#within(int, int, int)
+     */
+    private static class NearestCommand {
+        private static final int DEFAULT_COUNT = 5;
+        /**
+         * Most spawnpoints listed by <code>within</code>, the rest are only
+         * counted.
+         */
+        private static final int LIST_LIMIT = 10;
+
+        private static ColumnPos position(CommandContext<ServerCommandSource> context, boolean fromArgument) {
+            if (fromArgument)
+                return ColumnPosArgumentType.getColumnPos(context, "pos");
+            final Vec3d position = context.getSource().getPosition();
+            return new ColumnPos(MathHelper.floor(position.x), MathHelper.floor(position.z));
+        }
+
+        private static String describe(ServerCommandSource source, SpawnPointManager.NearbySpawnPoint spawnPoint) {
+            final UserCache userCache = source.getServer().getUserCache();
+            final String player = userCache == null ? spawnPoint.player().toString() : userCache.getByUuid(spawnPoint.player())
+                    .map(GameProfile::getName)
+                    .orElse(spawnPoint.player().toString());
+            return "%s at %d, %d (%.0f blocks)".formatted(
+                    player, spawnPoint.spawnPoint().x(), spawnPoint.spawnPoint().y(), spawnPoint.distance());
+        }
+
+        /**
+         * Lists the spawnpoints closest to a position.
+         */
+        private static int executeNearest(CommandContext<ServerCommandSource> context, boolean fromArgument, int count) {
+            final ColumnPos pos = position(context, fromArgument);
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            final List<SpawnPointManager.NearbySpawnPoint> nearest = spawnPointManager.nearest(pos.x(), pos.z(), count);
+            if (nearest.isEmpty()) {
+                context.getSource().sendFeedback(() -> Text.literal("No spawnpoints are assigned."), false);
+                return 0;
+            }
+
+            context.getSource().sendFeedback(() -> Text.literal("Closest spawnpoints to %d, %d:".formatted(pos.x(), pos.z())), false);
+            for (SpawnPointManager.NearbySpawnPoint spawnPoint : nearest)
+                context.getSource().sendFeedback(() -> Text.literal("  " + describe(context.getSource(), spawnPoint)), false);
+            return nearest.size();
+        }
+
+        /**
+         * Counts the spawnpoints within a radius of a position, listing the
+         * closest ones.
+         */
+        private static int executeWithin(CommandContext<ServerCommandSource> context, boolean fromArgument) {
+            final ColumnPos pos = position(context, fromArgument);
+            final int radius = IntegerArgumentType.getInteger(context, "radius");
+            final SpawnPointManager spawnPointManager = SpawnPointManager.getInstance(context.getSource().getWorld());
+            final List<SpawnPointManager.NearbySpawnPoint> within = spawnPointManager.within(pos.x(), pos.z(), radius);
+
+            context.getSource().sendFeedback(() -> Text.literal("%d spawnpoints within %d blocks of %d, %d%s".formatted(
+                    within.size(), radius, pos.x(), pos.z(), within.isEmpty() ? "." : ":")), false);
+            for (SpawnPointManager.NearbySpawnPoint spawnPoint : within.subList(0, Math.min(LIST_LIMIT, within.size())))
+                context.getSource().sendFeedback(() -> Text.literal("  " + describe(context.getSource(), spawnPoint)), false);
+            if (within.size() > LIST_LIMIT)
+                context.getSource().sendFeedback(() -> Text.literal("  and %d more".formatted(within.size() - LIST_LIMIT)), false);
+            return within.size();
+        }
+
+        /**
+         * Command tree for <code>spawnpoints nearest</code> command
+         */
+        public static final LiteralArgumentBuilder<ServerCommandSource> command =
+                literal("nearest")
+                        .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints.nearest", 2))
+                        .executes(context -> executeNearest(context, false, DEFAULT_COUNT))
+                        .then(literal("within").then(argument("radius", IntegerArgumentType.integer(0))
+                                .executes(context -> executeWithin(context, false))))
+                        .then(argument("pos", ColumnPosArgumentType.columnPos())
+                                .executes(context -> executeNearest(context, true, DEFAULT_COUNT))
+                                .then(argument("count", IntegerArgumentType.integer(1, 100))
+                                        .executes(context -> executeNearest(context, true, IntegerArgumentType.getInteger(context, "count"))))
+                                .then(literal("within").then(argument("radius", IntegerArgumentType.integer(0))
+                                        .executes(context -> executeWithin(context, true)))));
+    }
+
     /**
      * Full command tree for <code>spawnpoints</code> command
      */
@@ -296,5 +934,13 @@ public class SpawnpointsCommand {
             literal("spawnpoints")
                     .requires(source -> PermissionsService.sourceHasPermission(source, "command.spawnpoints", 2))
                     .then(GeneratorCommand.command)
-                    .then(ResetCommand.command);
+                    .then(ResetCommand.command)
+                    .then(ExcludeCommand.command)
+                    .then(StructuresCommand.command)
+                    .then(ValidationCommand.command)
+                    .then(EvictionCommand.command)
+                    .then(RegistryCommand.command)
+                    .then(TransferCommand.exportCommand)
+                    .then(TransferCommand.importCommand)
+                    .then(NearestCommand.command);
 }
@@ -0,0 +1,22 @@
+package xyz.verarr.spreadspawnpoints.mixin;
+
+import net.minecraft.server.PlayerManager;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import xyz.verarr.spreadspawnpoints.PermissionsService;
+
+@Mixin(PlayerManager.class)
+public class PlayerManagerMixin {
+    /**
+     * The command tree is resent whenever a player's permissions change,
+     * both by vanilla on op and deop and by permission mods. Drops the
+     * player's cached permission decisions before the tree is built.
+     */
+    @Inject(method = "sendCommandTree(Lnet/minecraft/server/network/ServerPlayerEntity;I)V", at = @At("HEAD"))
+    private void invalidatePermissions(ServerPlayerEntity player, int permissionLevel, CallbackInfo ci) {
+        PermissionsService.invalidate(player.getUuid());
+    }
+}
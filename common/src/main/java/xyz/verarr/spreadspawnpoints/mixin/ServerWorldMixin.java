@@ -0,0 +1,27 @@
+package xyz.verarr.spreadspawnpoints.mixin;
+
+import net.minecraft.server.world.ServerWorld;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointManager;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointManagerHolder;
+
+@Mixin(ServerWorld.class)
+public class ServerWorldMixin implements SpawnPointManagerHolder {
+    /**
+     * The spawnpoint manager of this world, once it has been loaded. Goes
+     * away together with the world when it is unloaded.
+     */
+    @Unique
+    private volatile SpawnPointManager spreadspawnpoints$spawnPointManager;
+
+    @Override
+    public SpawnPointManager spreadspawnpoints$getSpawnPointManager() {
+        return spreadspawnpoints$spawnPointManager;
+    }
+
+    @Override
+    public void spreadspawnpoints$setSpawnPointManager(SpawnPointManager spawnPointManager) {
+        spreadspawnpoints$spawnPointManager = spawnPointManager;
+    }
+}
@@ -0,0 +1,72 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import net.minecraft.nbt.NbtCompound;
+
+/**
+ * When spawnpoints of players who stopped playing are freed.
+ * <p>
+ * A spawnpoint is stale once its player has not been online for
+ * {@link #getMaxIdleDays()} days, or once more than
+ * {@link #getMaxPlayers()} players more recently active hold one. A limit
+ * of 0 disables it.
+ */
+public class EvictionPolicy {
+    private int maxIdleDays = 0;
+    private int maxPlayers = 0;
+
+    public boolean isEnabled() {
+        return maxIdleDays > 0 || maxPlayers > 0;
+    }
+
+    public int getMaxIdleDays() {
+        return maxIdleDays;
+    }
+
+    /**
+     * @param maxIdleDays days without login after which a spawnpoint is
+     *                    freed, 0 to never free spawnpoints by age
+     */
+    public void setMaxIdleDays(int maxIdleDays) {
+        if (maxIdleDays < 0) throw new IllegalArgumentException("maxIdleDays must not be negative");
+        this.maxIdleDays = maxIdleDays;
+    }
+
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    /**
+     * @param maxPlayers how many of the most recently active players keep
+     *                   their spawnpoint, 0 for no limit
+     */
+    public void setMaxPlayers(int maxPlayers) {
+        if (maxPlayers < 0) throw new IllegalArgumentException("maxPlayers must not be negative");
+        this.maxPlayers = maxPlayers;
+    }
+
+    @Override
+    public String toString() {
+        if (!isEnabled())
+            return "Spawnpoints are never evicted.";
+        StringBuilder builder = new StringBuilder("Spawnpoints are evicted");
+        if (maxIdleDays > 0)
+            builder.append(" after %d days without login".formatted(maxIdleDays));
+        if (maxIdleDays > 0 && maxPlayers > 0)
+            builder.append(" or");
+        if (maxPlayers > 0)
+            builder.append(" beyond the %d most recently active players".formatted(maxPlayers));
+        return builder.append('.').toString();
+    }
+
+    public NbtCompound writeNbt() {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt("maxIdleDays", maxIdleDays);
+        nbt.putInt("maxPlayers", maxPlayers);
+        return nbt;
+    }
+
+    public void modifyFromNbt(NbtCompound tag) {
+        maxIdleDays = Math.max(0, tag.getInt("maxIdleDays"));
+        maxPlayers = Math.max(0, tag.getInt("maxPlayers"));
+    }
+}
@@ -0,0 +1,256 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Named areas in which no spawnpoints may be generated.
+ * <p>
+ * Zones are indexed in an R-tree, bulk loaded with the Sort-Tile-Recursive
+ * algorithm whenever the zones change. Zones rarely change, so rebuilding
+ * keeps the tree optimally packed for the far more frequent point queries.
+ * <p>
+ * Changes are synchronized and swap in a freshly built tree, so queries are
+ * lock-free and safe from any thread.
+ */
+public class ExclusionZones {
+    private static final int NODE_CAPACITY = 8;
+
+    /**
+     * Axis-aligned bounding box, inclusive on all sides.
+     */
+    public record Box(int minX, int minZ, int maxX, int maxZ) {
+        public boolean contains(int x, int z) {
+            return minX <= x && x <= maxX && minZ <= z && z <= maxZ;
+        }
+
+        private Box union(Box other) {
+            return new Box(Math.min(minX, other.minX), Math.min(minZ, other.minZ),
+                    Math.max(maxX, other.maxX), Math.max(maxZ, other.maxZ));
+        }
+
+        private long centerX() {
+            return ((long) minX + maxX) / 2;
+        }
+
+        private long centerZ() {
+            return ((long) minZ + maxZ) / 2;
+        }
+    }
+
+    public sealed interface Zone permits Rectangle, Polygon {
+        String name();
+
+        Box bounds();
+
+        boolean contains(int x, int z);
+
+        NbtCompound writeNbt();
+    }
+
+    public record Rectangle(String name, Box bounds) implements Zone {
+        @Override
+        public boolean contains(int x, int z) {
+            return bounds.contains(x, z);
+        }
+
+        @Override
+        public NbtCompound writeNbt() {
+            NbtCompound nbt = new NbtCompound();
+            nbt.putString("name", name);
+            nbt.putString("type", "rectangle");
+            nbt.putIntArray("bounds", new int[]{bounds.minX(), bounds.minZ(), bounds.maxX(), bounds.maxZ()});
+            return nbt;
+        }
+
+        @Override
+        public String toString() {
+            return "%s: rectangle from %d, %d to %d, %d".formatted(name, bounds.minX(), bounds.minZ(), bounds.maxX(), bounds.maxZ());
+        }
+    }
+
+    /**
+     * @param points vertices as <code>x0, z0, x1, z1, ...</code>
+     */
+    public record Polygon(String name, int[] points, Box bounds) implements Zone {
+        public Polygon(String name, int[] points) {
+            this(name, points, boundsOf(points));
+        }
+
+        private static Box boundsOf(int[] points) {
+            if (points.length < 6 || points.length % 2 != 0)
+                throw new IllegalArgumentException("A polygon needs at least 3 points");
+            int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            for (int i = 0; i < points.length; i += 2) {
+                minX = Math.min(minX, points[i]);
+                maxX = Math.max(maxX, points[i]);
+                minZ = Math.min(minZ, points[i + 1]);
+                maxZ = Math.max(maxZ, points[i + 1]);
+            }
+            return new Box(minX, minZ, maxX, maxZ);
+        }
+
+        /**
+         * Even-odd rule point in polygon test.
+         */
+        @Override
+        public boolean contains(int x, int z) {
+            if (!bounds.contains(x, z)) return false;
+            boolean inside = false;
+            for (int i = 0, j = points.length - 2; i < points.length; j = i, i += 2) {
+                int xi = points[i], zi = points[i + 1];
+                int xj = points[j], zj = points[j + 1];
+                if ((zi > z) != (zj > z) &&
+                        x < (double) (xj - xi) * (z - zi) / (zj - zi) + xi)
+                    inside = !inside;
+            }
+            return inside;
+        }
+
+        @Override
+        public NbtCompound writeNbt() {
+            NbtCompound nbt = new NbtCompound();
+            nbt.putString("name", name);
+            nbt.putString("type", "polygon");
+            nbt.putIntArray("points", points);
+            return nbt;
+        }
+
+        @Override
+        public String toString() {
+            return "%s: polygon with %d points around %d, %d to %d, %d".formatted(name, points.length / 2,
+                    bounds.minX(), bounds.minZ(), bounds.maxX(), bounds.maxZ());
+        }
+    }
+
+    /**
+     * R-tree node. Leaves hold zones, inner nodes hold child nodes.
+     */
+    private record Node(Box bounds, Node[] children, Zone[] zones) {}
+
+    private final Map<String, Zone> zones = new LinkedHashMap<>();
+    private volatile Node root = null;
+
+    /**
+     * Test if a position lies in any exclusion zone.
+     *
+     * @return true if the position is excluded
+     */
+    public boolean contains(int x, int z) {
+        Node root = this.root;
+        return root != null && contains(root, x, z);
+    }
+
+    private static boolean contains(Node node, int x, int z) {
+        if (!node.bounds().contains(x, z)) return false;
+        if (node.zones() != null) {
+            for (Zone zone : node.zones())
+                if (zone.contains(x, z)) return true;
+            return false;
+        }
+        for (Node child : node.children())
+            if (contains(child, x, z)) return true;
+        return false;
+    }
+
+    public synchronized Collection<Zone> getZones() {
+        return List.copyOf(zones.values());
+    }
+
+    public synchronized boolean isEmpty() {
+        return zones.isEmpty();
+    }
+
+    /**
+     * Add a zone, replacing any zone with the same name.
+     *
+     * @param zone the zone to add
+     */
+    public synchronized void add(Zone zone) {
+        zones.put(zone.name(), zone);
+        rebuild();
+    }
+
+    /**
+     * @param name name of the zone to remove
+     * @return true if there was a zone with that name
+     */
+    public synchronized boolean remove(String name) {
+        boolean removed = zones.remove(name) != null;
+        if (removed) rebuild();
+        return removed;
+    }
+
+    private void rebuild() {
+        if (zones.isEmpty()) {
+            root = null;
+            return;
+        }
+
+        List<Node> level = pack(new ArrayList<>(zones.values()), Zone::bounds).stream()
+                .map(group -> new Node(unionOf(group, Zone::bounds), null, group.toArray(new Zone[0])))
+                .toList();
+        while (level.size() > 1) {
+            level = pack(new ArrayList<>(level), Node::bounds).stream()
+                    .map(group -> new Node(unionOf(group, Node::bounds), group.toArray(new Node[0]), null))
+                    .toList();
+        }
+        root = level.get(0);
+    }
+
+    private static <T> Box unionOf(List<T> items, Function<T, Box> bounds) {
+        Box box = bounds.apply(items.get(0));
+        for (T item : items)
+            box = box.union(bounds.apply(item));
+        return box;
+    }
+
+    /**
+     * Sort-Tile-Recursive grouping: sorts by x into vertical slices, then
+     * each slice by z into groups of {@link #NODE_CAPACITY}.
+     */
+    private static <T> List<List<T>> pack(List<T> items, Function<T, Box> bounds) {
+        int groupCount = (items.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(groupCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+
+        items.sort(Comparator.comparingLong(item -> bounds.apply(item).centerX()));
+        List<List<T>> groups = new ArrayList<>(groupCount);
+        for (int sliceStart = 0; sliceStart < items.size(); sliceStart += sliceSize) {
+            List<T> slice = new ArrayList<>(items.subList(sliceStart, Math.min(items.size(), sliceStart + sliceSize)));
+            slice.sort(Comparator.comparingLong(item -> bounds.apply(item).centerZ()));
+            for (int groupStart = 0; groupStart < slice.size(); groupStart += NODE_CAPACITY)
+                groups.add(slice.subList(groupStart, Math.min(slice.size(), groupStart + NODE_CAPACITY)));
+        }
+        return groups;
+    }
+
+    public synchronized NbtList writeNbt() {
+        NbtList nbt = new NbtList();
+        zones.values().forEach(zone -> nbt.add(zone.writeNbt()));
+        return nbt;
+    }
+
+    public synchronized void modifyFromNbt(NbtList nbt) {
+        zones.clear();
+        for (int i = 0; i < nbt.size(); i++) {
+            NbtCompound zoneNbt = nbt.getCompound(i);
+            String name = zoneNbt.getString("name");
+            Zone zone = switch (zoneNbt.getString("type")) {
+                case "rectangle" -> {
+                    int[] bounds = zoneNbt.getIntArray("bounds");
+                    yield new Rectangle(name, new Box(bounds[0], bounds[1], bounds[2], bounds[3]));
+                }
+                case "polygon" -> new Polygon(name, zoneNbt.getIntArray("points"));
+                default -> null;
+            };
+            if (zone != null)
+                zones.put(name, zone);
+        }
+        rebuild();
+    }
+}
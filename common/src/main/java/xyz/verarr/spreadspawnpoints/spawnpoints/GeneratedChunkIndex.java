@@ -0,0 +1,153 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.dimension.DimensionType;
+import xyz.verarr.spreadspawnpoints.SpreadSpawnPoints;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Which chunks of a world have been saved to disk.
+ * <p>
+ * The index is built from the headers of the region files in the world's
+ * <code>region</code> directory: the first 4 KiB of a region file hold one
+ * location entry per chunk, which is non-zero if the chunk is stored. The
+ * headers are read through memory-mapped file channels, without touching
+ * any chunk data. Afterwards, chunks are added as the server saves them,
+ * once they have reached {@link ChunkStatus#SURFACE}, the lowest status
+ * validation checks at.
+ * <p>
+ * A stored chunk is not necessarily fully generated. Saved chunks are only
+ * added once their surface exists, but the region headers also list
+ * proto-chunks saved at earlier statuses, which can't be told apart without
+ * reading their data. The index is therefore a hint of which chunks are
+ * cheap to validate, not a guarantee.
+ */
+public class GeneratedChunkIndex {
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+    private static final int HEADER_ENTRIES = 32 * 32;
+
+    private final ServerWorld world;
+    /**
+     * One bit per chunk, 1024 bits per region.
+     */
+    private final ConcurrentHashMap<Long, AtomicLongArray> regions = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile CompletableFuture<Void> build = null;
+
+    public GeneratedChunkIndex(ServerWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Starts reading the region file headers in the background, unless they
+     * have been read already.
+     */
+    public synchronized void build() {
+        if (build != null) return;
+        Path regionDirectory = DimensionType.getSaveDirectory(world.getRegistryKey(), world.getServer().getSavePath(WorldSavePath.ROOT))
+                .resolve("region");
+        build = CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            int files = readRegionDirectory(regionDirectory);
+            SpreadSpawnPoints.LOGGER.info("Indexed {} generated chunks from {} region files of {} in {} ms",
+                    size.get(), files, world.getRegistryKey().getValue(), (System.nanoTime() - start) / 1_000_000);
+        }, Util.getMainWorkerExecutor());
+    }
+
+    /**
+     * @return true once the region file headers have been read
+     */
+    public boolean isReady() {
+        CompletableFuture<Void> build = this.build;
+        return build != null && build.isDone();
+    }
+
+    /**
+     * @return how many chunks are known to be generated
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Records that a chunk has been saved with at least its surface generated.
+     *
+     * @param chunkPos position of the chunk
+     */
+    public void add(ChunkPos chunkPos) {
+        int index = (chunkPos.getRegionRelativeX() << 5) | chunkPos.getRegionRelativeZ();
+        AtomicLongArray bits = regions.computeIfAbsent(
+                ChunkPos.toLong(chunkPos.getRegionX(), chunkPos.getRegionZ()),
+                key -> new AtomicLongArray(HEADER_ENTRIES / 64));
+        long mask = 1L << (index & 63);
+        if ((bits.getAndAccumulate(index >> 6, mask, (a, b) -> a | b) & mask) == 0)
+            size.incrementAndGet();
+    }
+
+    /**
+     * @param x block x coordinate
+     * @param z block z coordinate
+     * @return true if the chunk containing the block has been saved
+     */
+    public boolean contains(int x, int z) {
+        int chunkX = ChunkSectionPos.getSectionCoord(x);
+        int chunkZ = ChunkSectionPos.getSectionCoord(z);
+        AtomicLongArray bits = regions.get(ChunkPos.toLong(chunkX >> 5, chunkZ >> 5));
+        if (bits == null) return false;
+        int index = ((chunkX & 31) << 5) | (chunkZ & 31);
+        return (bits.get(index >> 6) & (1L << (index & 63))) != 0;
+    }
+
+    private int readRegionDirectory(Path regionDirectory) {
+        if (!Files.isDirectory(regionDirectory)) return 0;
+        int files = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(regionDirectory, "*.mca")) {
+            for (Path file : stream) {
+                Matcher matcher = REGION_FILE.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+                try {
+                    readRegionHeader(file, Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                    files++;
+                } catch (IOException e) {
+                    SpreadSpawnPoints.LOGGER.warn("Failed to read region file header {}: {}", file, e.toString());
+                }
+            }
+        } catch (IOException e) {
+            SpreadSpawnPoints.LOGGER.warn("Failed to list region files in {}: {}", regionDirectory, e.toString());
+        }
+        return files;
+    }
+
+    private void readRegionHeader(Path file, int regionX, int regionZ) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // empty or truncated region files have no chunks
+            if (channel.size() < HEADER_ENTRIES * 4L) return;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_ENTRIES * 4L);
+            IntBuffer locations = header.asIntBuffer();
+            for (int i = 0; i < HEADER_ENTRIES; i++) {
+                // entries are ordered by z, then x
+                if (locations.get(i) != 0)
+                    add(new ChunkPos((regionX << 5) | (i & 31), (regionZ << 5) | (i >> 5)));
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Whether candidate spawnpoints should be in chunks that have already been
+ * generated.
+ *
+ * @see GeneratedChunkIndex
+ */
+public enum GeneratedTerrainMode {
+    /**
+     * Accept candidates anywhere.
+     */
+    OFF,
+    /**
+     * Reject candidates in ungenerated chunks, unless a number of candidates
+     * in a row were, so new land is still used once the generated land is
+     * taken.
+     */
+    PREFER,
+    /**
+     * Reject every candidate in an ungenerated chunk.
+     */
+    REQUIRE;
+
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param name name of the mode, as returned by {@link #getName()}
+     * @return the mode, or <code>null</code> if there is none by that name
+     */
+    public static @Nullable GeneratedTerrainMode byName(String name) {
+        for (GeneratedTerrainMode mode : values()) {
+            if (mode.getName().equals(name))
+                return mode;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import net.minecraft.entity.player.PlayerEntity;
+import org.joml.Vector2i;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A spawnpoint generator whose spawnpoints depend on the player they are
+ * generated for.
+ * <p>
+ * When the active generator implements this interface, the player-specific
+ * methods are used instead of their counterparts in
+ * {@link SpawnPointGenerator}.
+ */
+public interface PlayerSpawnPointGenerator extends SpawnPointGenerator {
+    /**
+     * Generate a new spawnpoint for a player and return it.
+     *
+     * @param player the player the spawnpoint is for
+     * @return the generated spawnpoint coordinates.
+     */
+    Vector2i next(PlayerEntity player);
+
+    /**
+     * Test if a spawnpoint is valid for a player, as in it may be generated
+     * by this generator for that player.
+     *
+     * @param player     the player the spawnpoint is for
+     * @param spawnPoint spawnpoint to test
+     * @return true if the spawnpoint may be generated by this generator, false otherwise.
+     */
+    boolean isValid(PlayerEntity player, Vector2i spawnPoint);
+
+    /**
+     * Internal method to add a player's spawnpoint to the generator. Only use
+     * this if necessary.
+     *
+     * @param player     UUID of the player owning the spawnpoint
+     * @param spawnPoint spawnpoint to add
+     */
+    void add(UUID player, Vector2i spawnPoint);
+
+    /**
+     * Internal method to remove a player's spawnpoint from the generator.
+     * Only use this if necessary.
+     *
+     * @param player     UUID of the player owning the spawnpoint
+     * @param spawnPoint spawnpoint to remove
+     */
+    void remove(UUID player, Vector2i spawnPoint);
+
+    /**
+     * By default the spawnpoints are added one by one with
+     * {@link #add(UUID, Vector2i)}.
+     *
+     * @param spawnPoints spawnpoints to add, by the UUID of their player
+     */
+    @Override
+    default void addAll(Map<UUID, Vector2i> spawnPoints) {
+        spawnPoints.forEach(this::add);
+    }
+}
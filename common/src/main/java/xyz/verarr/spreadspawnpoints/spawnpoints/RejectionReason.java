@@ -0,0 +1,24 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+/**
+ * Why a candidate spawnpoint was rejected, so generators can tell which
+ * rejections they may remember.
+ *
+ * @see SpawnPointGenerator#reject(org.joml.Vector2i, RejectionReason)
+ */
+public enum RejectionReason {
+    /**
+     * The generator itself considered the candidate invalid, e.g. because of
+     * its spacing.
+     */
+    GENERATOR,
+    /**
+     * The terrain of the candidate is unsuitable, which does not change.
+     */
+    PERMANENT,
+    /**
+     * A check that may pass later rejected the candidate, e.g. because its
+     * chunk was not generated yet.
+     */
+    TEMPORARY
+}
@@ -0,0 +1,40 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * In what order the columns around a candidate spawnpoint are searched for
+ * a spot to spawn on.
+ */
+public enum ScanStrategy {
+    /**
+     * Visit the columns in the pseudo-random order vanilla uses. This may
+     * jump between chunks and load every chunk around the candidate before
+     * giving up.
+     */
+    VANILLA,
+    /**
+     * Visit the columns chunk by chunk, already loaded chunks first, then
+     * by distance to the candidate. Gives up after a maximum number of
+     * chunks, bounding how many chunks a rejected candidate can load.
+     */
+    CHUNKED;
+
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param name name of the strategy, as returned by {@link #getName()}
+     * @return the strategy, or <code>null</code> if there is none by that name
+     */
+    public static @Nullable ScanStrategy byName(String name) {
+        for (ScanStrategy strategy : values()) {
+            if (strategy.getName().equals(name))
+                return strategy;
+        }
+        return null;
+    }
+}
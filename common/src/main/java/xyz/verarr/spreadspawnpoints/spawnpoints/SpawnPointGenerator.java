@@ -2,6 +2,10 @@ package xyz.verarr.spreadspawnpoints.spawnpoints;
 
 import org.joml.Vector2i;
 
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 public interface SpawnPointGenerator extends NBTSerializable {
     /**
      * Generate a new spawnpoint and return it.
@@ -18,6 +22,58 @@ public interface SpawnPointGenerator extends NBTSerializable {
      */
     boolean isValid(Vector2i spawnPoint);
 
+    /**
+     * Get the spawnpoints that upcoming calls to {@link #next()} will return,
+     * without advancing the generator. Used to prepare the terrain of
+     * candidates ahead of time.
+     * <p>
+     * Implementations that cannot predict their output may return an empty
+     * list.
+     *
+     * @param count maximum amount of spawnpoints to return
+     * @return upcoming spawnpoints, in the order they will be generated
+     */
+    List<Vector2i> peek(int count);
+
+    /**
+     * Internal method to tell the generator that a spawnpoint returned by
+     * {@link #next()} has been permanently rejected. Generators may use this
+     * to never generate it again.
+     * <p>
+     * Implementations may ignore this method.
+     *
+     * @param spawnPoint spawnpoint that was rejected
+     */
+    void reject(Vector2i spawnPoint);
+
+    /**
+     * Internal method to tell the generator that a spawnpoint returned by
+     * {@link #next()} has been rejected, and why.
+     * <p>
+     * By default this calls {@link #reject(Vector2i)} for
+     * {@link RejectionReason#PERMANENT} rejections only, as the others may
+     * pass later.
+     *
+     * @param spawnPoint spawnpoint that was rejected
+     * @param reason     why it was rejected
+     */
+    default void reject(Vector2i spawnPoint, RejectionReason reason) {
+        if (reason == RejectionReason.PERMANENT)
+            reject(spawnPoint);
+    }
+
+    /**
+     * Internal method to tell the generator that a spawnpoint returned by
+     * {@link #next()} has passed all checks and is being assigned. Unlike
+     * {@link #add(Vector2i)}, this is not called for spawnpoints assigned in
+     * other ways, e.g. imported ones.
+     * <p>
+     * Implementations may ignore this method.
+     *
+     * @param spawnPoint spawnpoint that was accepted
+     */
+    default void accept(Vector2i spawnPoint) {}
+
     /**
      * Internal method to add a spawnpoint to the generator. Only use this if necessary.
      * <p>
@@ -35,4 +91,37 @@ public interface SpawnPointGenerator extends NBTSerializable {
      * @param spawnPoint spawnpoint to remove
      */
     void remove(Vector2i spawnPoint);
+
+    /**
+     * Internal method to add many spawnpoints to the generator at once, e.g.
+     * when loading a world or switching generators. Only use this if
+     * necessary.
+     * <p>
+     * By default the spawnpoints are added one by one. Generators with a
+     * spatial index should bulk load them instead.
+     *
+     * @param spawnPoints spawnpoints to add, by the UUID of their player
+     */
+    default void addAll(Map<UUID, Vector2i> spawnPoints) {
+        spawnPoints.values().forEach(this::add);
+    }
+
+    /**
+     * Whether several players may hold the same spawnpoint, like in vanilla.
+     * Otherwise, a spawnpoint another player already holds is never
+     * assigned, even if this generator generates it again.
+     *
+     * @return true if spawnpoints may be shared
+     */
+    default boolean sharesSpawnPoints() {
+        return false;
+    }
+
+    /**
+     * Internal method to remove all spawnpoints from the generator. Only use
+     * this if necessary.
+     * <p>
+     * Implementations may ignore this method.
+     */
+    void clear();
 }
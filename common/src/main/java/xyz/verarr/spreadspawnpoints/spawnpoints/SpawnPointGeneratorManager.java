@@ -2,6 +2,7 @@ package xyz.verarr.spreadspawnpoints.spawnpoints;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
@@ -12,9 +13,33 @@ import xyz.verarr.spreadspawnpoints.spawnpoints.generators.VanillaSpawnPointGene
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Owns the active spawnpoint generator of a world and everything spawnpoints
+ * are validated against.
+ * <p>
+ * Generators are not thread-safe, so every access to the generator holds
+ * {@link #generatorLock}. It is only held for the generator's own work,
+ * never while chunks are loaded, so off-thread readers such as
+ * {@link #isValid(Vector2i)} do not wait for a search to finish. Searches
+ * themselves are serialized on this manager.
+ */
 public class SpawnPointGeneratorManager {
     private static final Class<? extends SpawnPointGenerator> DEFAULT_SPAWNPOINT_GENERATOR = VanillaSpawnPointGenerator.class;
+    /**
+     * How many upcoming spawnpoints to prepare the terrain of while
+     * validating.
+     */
+    private static final int LOOKAHEAD = 8;
+    /**
+     * How many candidates in a row may be rejected for being in ungenerated
+     * chunks in {@link GeneratedTerrainMode#PREFER} mode.
+     */
+    private static final int GENERATED_TERRAIN_PATIENCE = 16;
 
     private static final BiMap<Identifier, Class<? extends SpawnPointGenerator>> registeredSpawnPointGenerators = HashBiMap.create();
 
@@ -95,11 +120,101 @@ public class SpawnPointGeneratorManager {
     }
 
     private final ServerWorld serverWorld;
-    private SpawnPointGenerator generator;
+    private volatile SpawnPointGenerator generator;
+    private final Object generatorLock = new Object();
+    public final ExclusionZones exclusionZones = new ExclusionZones();
+    public final StructureFilter structureFilter;
+    public final ValidationPipeline validationPipeline = new ValidationPipeline();
+    private final ValidationPipeline.Stage generatorStage;
+    private final ValidationPipeline.Stage terrainStage;
+    private volatile ValidationMode validationMode = ValidationMode.FULL;
+    private volatile ScanStrategy scanStrategy = ScanStrategy.VANILLA;
+    private volatile int scanMaxChunks = 4;
+    public final GeneratedChunkIndex generatedChunks;
+    private volatile GeneratedTerrainMode generatedTerrainMode = GeneratedTerrainMode.OFF;
+    private int ungeneratedInARow = 0;
 
     public SpawnPointGeneratorManager(ServerWorld world) {
         this.generator = constructSpawnPointGeneratorForWorld(DEFAULT_SPAWNPOINT_GENERATOR, world);
         this.serverWorld = world;
+        this.structureFilter = new StructureFilter(world);
+        this.generatedChunks = new GeneratedChunkIndex(world);
+
+        validationPipeline.addStage("exclusions", (player, spawnPoint) ->
+                !exclusionZones.contains(spawnPoint.x, spawnPoint.y));
+        generatorStage = validationPipeline.addStage("generator", (player, spawnPoint) -> {
+            synchronized (generatorLock) {
+                return isValidForGenerator(player, spawnPoint);
+            }
+        });
+        validationPipeline.addStage("generated", (player, spawnPoint) -> isGenerated(spawnPoint));
+        validationPipeline.addStage("structures", (player, spawnPoint) ->
+                !structureFilter.isNearStructure(spawnPoint.x, spawnPoint.y));
+        terrainStage = validationPipeline.addStage("terrain", (player, spawnPoint) ->
+                SpawnPointHelper.isValidSpawnPoint(serverWorld, new BlockPos(spawnPoint.x, 0, spawnPoint.y),
+                        validationMode, scanStrategy, scanMaxChunks));
+    }
+
+    public ValidationMode getValidationMode() {
+        return validationMode;
+    }
+
+    /**
+     * @param validationMode how far to generate chunks to check the terrain
+     *                       of candidates
+     */
+    public void setValidationMode(ValidationMode validationMode) {
+        this.validationMode = validationMode;
+    }
+
+    public GeneratedTerrainMode getGeneratedTerrainMode() {
+        return generatedTerrainMode;
+    }
+
+    /**
+     * Sets whether candidates should be in generated chunks. The
+     * {@link #generatedChunks} index is built in the background when first
+     * needed; until it is ready, every candidate is accepted.
+     *
+     * @param generatedTerrainMode the new mode
+     */
+    public void setGeneratedTerrainMode(GeneratedTerrainMode generatedTerrainMode) {
+        this.generatedTerrainMode = generatedTerrainMode;
+        if (generatedTerrainMode != GeneratedTerrainMode.OFF)
+            generatedChunks.build();
+    }
+
+    private boolean isGenerated(Vector2i spawnPoint) {
+        GeneratedTerrainMode mode = generatedTerrainMode;
+        if (mode == GeneratedTerrainMode.OFF || !generatedChunks.isReady()
+                || generatedChunks.contains(spawnPoint.x, spawnPoint.y)) {
+            ungeneratedInARow = 0;
+            return true;
+        }
+        if (mode == GeneratedTerrainMode.PREFER && ++ungeneratedInARow > GENERATED_TERRAIN_PATIENCE) {
+            ungeneratedInARow = 0;
+            return true;
+        }
+        return false;
+    }
+
+    public ScanStrategy getScanStrategy() {
+        return scanStrategy;
+    }
+
+    public int getScanMaxChunks() {
+        return scanMaxChunks;
+    }
+
+    /**
+     * @param scanStrategy  order to search the columns around candidates in
+     * @param scanMaxChunks how many chunks {@link ScanStrategy#CHUNKED}
+     *                      searches at most, 0 for no limit
+     */
+    public void setScanStrategy(ScanStrategy scanStrategy, int scanMaxChunks) {
+        if (scanMaxChunks < 0) throw new IllegalArgumentException("scanMaxChunks must not be negative");
+        this.scanStrategy = scanStrategy;
+        this.scanMaxChunks = scanMaxChunks;
     }
 
     /**
@@ -120,7 +235,10 @@ public class SpawnPointGeneratorManager {
      * @param identifier the identifier of the new spawnpoint generator type
      */
     public void setSpawnPointGenerator(Identifier identifier) {
-        generator = constructSpawnPointGeneratorForWorld(lookupSpawnPointGenerator(identifier), serverWorld);
+        SpawnPointGenerator newGenerator = constructSpawnPointGeneratorForWorld(lookupSpawnPointGenerator(identifier), serverWorld);
+        synchronized (generatorLock) {
+            generator = newGenerator;
+        }
     }
 
     /**
@@ -129,44 +247,126 @@ public class SpawnPointGeneratorManager {
      * @return new spawnpoint
      */
     public Vector2i nextUnsafe() {
-        return generator.next();
+        synchronized (generatorLock) {
+            return generator.next();
+        }
+    }
+
+    /**
+     * Test if the active generator would accept a spawnpoint given the
+     * spawnpoints it currently holds. Safe to call from any thread.
+     *
+     * @param spawnPoint spawnpoint to test
+     * @return true if the spawnpoint is valid for the generator
+     * @see SpawnPointGenerator#isValid(Vector2i)
+     */
+    public boolean isValid(Vector2i spawnPoint) {
+        synchronized (generatorLock) {
+            return generator.isValid(spawnPoint);
+        }
+    }
+
+    /**
+     * Only called while holding {@link #generatorLock}.
+     */
+    private boolean isValidForGenerator(PlayerEntity player, Vector2i spawnPoint) {
+        return player != null && generator instanceof PlayerSpawnPointGenerator playerGenerator
+                ? playerGenerator.isValid(player, spawnPoint)
+                : generator.isValid(spawnPoint);
     }
 
     /**
      * Generate a new spawnpoint, <b>iteratively trying</b> until a valid
      * spawnpoint is found.
+     * <p>
+     * Every candidate is run through the {@link #validationPipeline}. If the
+     * generator can predict its upcoming spawnpoints, their chunks are loaded
+     * in the background while the current one is validated. Unless the
+     * {@link ValidationMode} is {@link ValidationMode#FULL}, the accepted
+     * spawnpoint is checked again on the fully generated chunk.
+     * <p>
+     * The generator is only locked while it generates and checks candidates,
+     * not while their terrain is validated. It checks the accepted
+     * spawnpoint once more before adding it, in case it was changed in the
+     * meantime.
      *
+     * @param player the player the spawnpoint is for
      * @return new valid spawnpoint
+     * @see PlayerSpawnPointGenerator
      */
-    public Vector2i nextSafe() {
-        int vanillaInvalid = 0;
-        int customInvalid = 0;
+    public synchronized Vector2i nextSafe(PlayerEntity player) {
+        ValidationMode mode = validationMode;
+
+        Map<String, Integer> rejections = new LinkedHashMap<>();
+        int invalid = 0;
         while (true) {
-            if (vanillaInvalid + customInvalid % 100 == 0 && vanillaInvalid + customInvalid != 0)
-                SpreadSpawnPoints.LOGGER.warn("Iterating through {}th spawnpoint", vanillaInvalid + customInvalid);
+            if (invalid % 100 == 0 && invalid != 0)
+                SpreadSpawnPoints.LOGGER.warn("Iterating through {}th spawnpoint", invalid);
 
-            Vector2i spawnPoint = generator.next();
+            Vector2i spawnPoint;
+            List<Vector2i> upcoming;
+            synchronized (generatorLock) {
+                spawnPoint = generator instanceof PlayerSpawnPointGenerator playerGenerator
+                        ? playerGenerator.next(player)
+                        : generator.next();
+                upcoming = generator.peek(LOOKAHEAD);
+            }
+            upcoming.forEach(next ->
+                    SpawnPointHelper.prefetch(serverWorld, new BlockPos(next.x, 0, next.y), mode));
 
-            boolean customValid = generator.isValid(spawnPoint);
-            if (!customValid) {
-                customInvalid++;
+            ValidationPipeline.Stage rejectedBy = validationPipeline.test(player, spawnPoint);
+            if (rejectedBy != null) {
+                rejections.merge(rejectedBy.getName(), 1, Integer::sum);
+                invalid++;
+                reject(spawnPoint, reasonFor(rejectedBy));
                 continue;
             }
 
-            boolean vanillaValid = SpawnPointHelper.isValidSpawnPoint(serverWorld, new BlockPos(spawnPoint.x, 0, spawnPoint.y));
-            if (!vanillaValid) {
-                vanillaInvalid++;
+            if (mode != ValidationMode.FULL
+                    && !SpawnPointHelper.isValidSpawnPoint(serverWorld, new BlockPos(spawnPoint.x, 0, spawnPoint.y),
+                            ValidationMode.FULL, scanStrategy, scanMaxChunks)) {
+                rejections.merge("full terrain", 1, Integer::sum);
+                invalid++;
+                reject(spawnPoint, RejectionReason.PERMANENT);
                 continue;
             }
 
-            if (vanillaInvalid + customInvalid > 1)
-                SpreadSpawnPoints.LOGGER.info("Iterated through {} spawnpoints ({} gamerule-invalid, {} generator-invalid) before valid spawnpoint found",
-                        vanillaInvalid + customInvalid, vanillaInvalid, customInvalid);
-            generator.add(spawnPoint);
+            synchronized (generatorLock) {
+                if (!isValidForGenerator(player, spawnPoint)) {
+                    rejections.merge(generatorStage.getName(), 1, Integer::sum);
+                    invalid++;
+                    generator.reject(spawnPoint, RejectionReason.GENERATOR);
+                    continue;
+                }
+                generator.accept(spawnPoint);
+                addSpawnPoint(player.getUuid(), spawnPoint);
+            }
+            if (invalid > 1)
+                SpreadSpawnPoints.LOGGER.info("Iterated through {} spawnpoints ({}) before valid spawnpoint found",
+                        invalid, String.join(", ", rejections.entrySet().stream()
+                                .map(entry -> entry.getValue() + " " + entry.getKey())
+                                .toList()));
             return spawnPoint;
         }
     }
 
+    /**
+     * Whether a rejection by a stage may pass later. Only rejections by the
+     * terrain are permanent; exclusion zones and structure filters can be
+     * changed, and chunks get generated.
+     */
+    private RejectionReason reasonFor(ValidationPipeline.Stage stage) {
+        if (stage == generatorStage) return RejectionReason.GENERATOR;
+        if (stage == terrainStage) return RejectionReason.PERMANENT;
+        return RejectionReason.TEMPORARY;
+    }
+
+    private void reject(Vector2i spawnPoint, RejectionReason reason) {
+        synchronized (generatorLock) {
+            generator.reject(spawnPoint, reason);
+        }
+    }
+
     /**
      * Serialize data of currently active spawnpoint generator to NBT. This may
      * be settings or state. It is up to the generator implementation to
@@ -175,7 +375,9 @@ public class SpawnPointGeneratorManager {
      * @return data of currently active spawnpoint generator as NBT
      */
     public NbtCompound writeNbt() {
-        return generator.writeNbt();
+        synchronized (generatorLock) {
+            return generator.writeNbt();
+        }
     }
 
     /**
@@ -187,7 +389,9 @@ public class SpawnPointGeneratorManager {
      * @see SpawnPointGenerator#modifyFromNbt(NbtCompound)
      */
     public void modifyFromNbt(NbtCompound nbt) {
-        generator.modifyFromNbt(nbt);
+        synchronized (generatorLock) {
+            generator.modifyFromNbt(nbt);
+        }
     }
 
     /**
@@ -199,14 +403,65 @@ public class SpawnPointGeneratorManager {
      * @see SpawnPointGenerator#modifyFromNbtPartial(NbtCompound)
      */
     public void modifyFromNbtPartial(NbtCompound nbt) throws IllegalArgumentException {
-        generator.modifyFromNbtPartial(nbt);
+        synchronized (generatorLock) {
+            generator.modifyFromNbtPartial(nbt);
+        }
     }
 
     public void addSpawnPoint(Vector2i spawnPoint) {
-        generator.add(spawnPoint);
+        synchronized (generatorLock) {
+            generator.add(spawnPoint);
+        }
     }
 
     public void removeSpawnPoint(Vector2i spawnPoint) {
-        generator.remove(spawnPoint);
+        synchronized (generatorLock) {
+            generator.remove(spawnPoint);
+        }
+    }
+
+    public void addSpawnPoint(UUID player, Vector2i spawnPoint) {
+        synchronized (generatorLock) {
+            if (generator instanceof PlayerSpawnPointGenerator playerGenerator)
+                playerGenerator.add(player, spawnPoint);
+            else
+                generator.add(spawnPoint);
+        }
+    }
+
+    public void removeSpawnPoint(UUID player, Vector2i spawnPoint) {
+        synchronized (generatorLock) {
+            if (generator instanceof PlayerSpawnPointGenerator playerGenerator)
+                playerGenerator.remove(player, spawnPoint);
+            else
+                generator.remove(spawnPoint);
+        }
+    }
+
+    /**
+     * @see SpawnPointGenerator#addAll(Map)
+     */
+    public void addSpawnPoints(Map<UUID, Vector2i> spawnPoints) {
+        synchronized (generatorLock) {
+            generator.addAll(spawnPoints);
+        }
+    }
+
+    /**
+     * @see SpawnPointGenerator#sharesSpawnPoints()
+     */
+    public boolean sharesSpawnPoints() {
+        synchronized (generatorLock) {
+            return generator.sharesSpawnPoints();
+        }
+    }
+
+    /**
+     * @see SpawnPointGenerator#clear()
+     */
+    public void clearSpawnPoints() {
+        synchronized (generatorLock) {
+            generator.clear();
+        }
     }
 }
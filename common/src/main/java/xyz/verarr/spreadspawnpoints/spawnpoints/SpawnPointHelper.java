@@ -1,13 +1,101 @@
 package xyz.verarr.spreadspawnpoints.spawnpoints;
 
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
 import net.minecraft.server.network.SpawnLocating;
+import net.minecraft.server.world.ChunkTicketType;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.MathHelper;
-import net.minecraft.util.math.random.Random;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkStatus;
+import org.jetbrains.annotations.Nullable;
+import xyz.verarr.spreadspawnpoints.SpreadSpawnPoints;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class SpawnPointHelper extends SpawnLocating {
+    /**
+     * Ticket keeping prefetched chunks loaded until they are validated.
+     */
+    private static final ChunkTicketType<ChunkPos> PREFETCH_TICKET = ChunkTicketType.create(
+            SpreadSpawnPoints.MOD_ID + ":prefetch",
+            Comparator.comparingLong(ChunkPos::toLong),
+            20 * 15
+    );
+
+    /**
+     * Requests the chunk of a spawnpoint to be loaded (generating it if
+     * necessary) in the background. Worldgen runs on the worldgen workers,
+     * so several chunks can be prepared concurrently while the server
+     * thread keeps validating.
+     *
+     * @param world world of the spawnpoint
+     * @param pos   spawnpoint to prefetch
+     */
+    public static void prefetch(ServerWorld world, BlockPos pos) {
+        prefetch(world, pos, ValidationMode.FULL);
+    }
+
+    /**
+     * Requests the chunk of a spawnpoint to be generated up to the status
+     * needed by a validation mode in the background.
+     *
+     * @param world world of the spawnpoint
+     * @param pos   spawnpoint to prefetch
+     * @param mode  validation mode the spawnpoint will be checked with
+     */
+    public static void prefetch(ServerWorld world, BlockPos pos, ValidationMode mode) {
+        ChunkPos chunkPos = new ChunkPos(pos);
+        // a ticket at level 33 + n holds the chunk n steps below FULL
+        int radius = -ChunkStatus.getDistanceFromFull(mode.getStatus());
+        world.getChunkManager().addTicket(PREFETCH_TICKET, chunkPos, radius, chunkPos);
+    }
+
     public static boolean isValidSpawnPoint(ServerWorld world, BlockPos pos) {
+        return isValidSpawnPoint(world, pos, ValidationMode.FULL);
+    }
+
+    /**
+     * Checks if there is a spot to spawn on around a spawnpoint, the same
+     * way vanilla picks the exact spawn position of a player.
+     *
+     * @param world world of the spawnpoint
+     * @param pos   spawnpoint to check
+     * @param mode  how far to generate the chunks checked
+     * @return true if a player can spawn there
+     */
+    public static boolean isValidSpawnPoint(ServerWorld world, BlockPos pos, ValidationMode mode) {
+        return isValidSpawnPoint(world, pos, mode, ScanStrategy.VANILLA, 0);
+    }
+
+    /**
+     * Checks if there is a spot to spawn on around a spawnpoint.
+     *
+     * @param world     world of the spawnpoint
+     * @param pos       spawnpoint to check
+     * @param mode      how far to generate the chunks checked
+     * @param strategy  order to check the columns around the spawnpoint in
+     * @param maxChunks how many chunks {@link ScanStrategy#CHUNKED} checks
+     *                  at most, 0 for no limit
+     * @return true if a player can spawn there
+     */
+    public static boolean isValidSpawnPoint(ServerWorld world, BlockPos pos, ValidationMode mode, ScanStrategy strategy, int maxChunks) {
+        int i = spawnRadius(world, pos);
+        return switch (strategy) {
+            case VANILLA -> scanVanilla(world, pos, i, mode);
+            case CHUNKED -> scanChunked(world, pos, i, mode, maxChunks);
+        };
+    }
+
+    private static int spawnRadius(ServerWorld world, BlockPos pos) {
         int i = Math.max(0, world.getServer().getSpawnRadius(world));
         int j = MathHelper.floor(world.getWorldBorder().getDistanceInsideBorder(pos.getX(), pos.getZ()));
         if (j < i) {
@@ -17,18 +105,21 @@ public class SpawnPointHelper extends SpawnLocating {
         if (j <= 1) {
             i = 1;
         }
+        return i;
+    }
 
+    private static boolean scanVanilla(ServerWorld world, BlockPos pos, int i, ValidationMode mode) {
         long l = i * 2L + 1;
         long m = l * l;
         int k = m > 2147483647L ? Integer.MAX_VALUE : (int) m;
         int n = calculateSpawnOffsetMultiplier(k);
-        int o = Random.create().nextInt(k);
+        int o = ThreadLocalRandom.current().nextInt(k);
 
         for (int p = 0; p < k; ++p) {
             int q = (o + n * p) % k;
             int r = q % (i * 2 + 1);
             int s = q / (i * 2 + 1);
-            BlockPos blockPos2 = findOverworldSpawn(world, pos.getX() + r - i, pos.getZ() + s - i);
+            BlockPos blockPos2 = findSpawn(world, pos.getX() + r - i, pos.getZ() + s - i, mode);
             if (blockPos2 != null) {
                 return true;
             }
@@ -36,6 +127,87 @@ public class SpawnPointHelper extends SpawnLocating {
         return false;
     }
 
+    /**
+     * Checks the columns within <code>radius</code> of a spawnpoint one chunk
+     * at a time, so each chunk is requested once. Chunks that are already
+     * available at the needed status come first, the rest by distance to
+     * the spawnpoint.
+     */
+    private static boolean scanChunked(ServerWorld world, BlockPos pos, int radius, ValidationMode mode, int maxChunks) {
+        int minX = pos.getX() - radius, maxX = pos.getX() + radius;
+        int minZ = pos.getZ() - radius, maxZ = pos.getZ() + radius;
+
+        List<ChunkPos> loaded = new ArrayList<>();
+        List<ChunkPos> unloaded = new ArrayList<>();
+        for (int chunkX = ChunkSectionPos.getSectionCoord(minX); chunkX <= ChunkSectionPos.getSectionCoord(maxX); chunkX++) {
+            for (int chunkZ = ChunkSectionPos.getSectionCoord(minZ); chunkZ <= ChunkSectionPos.getSectionCoord(maxZ); chunkZ++) {
+                ChunkPos chunkPos = new ChunkPos(chunkX, chunkZ);
+                if (world.getChunk(chunkX, chunkZ, mode.getStatus(), false) != null)
+                    loaded.add(chunkPos);
+                else
+                    unloaded.add(chunkPos);
+            }
+        }
+        ChunkPos center = new ChunkPos(pos);
+        Comparator<ChunkPos> byDistance = Comparator.comparingInt(center::getSquaredDistance);
+        loaded.sort(byDistance);
+        unloaded.sort(byDistance);
+        loaded.addAll(unloaded);
+
+        int chunks = maxChunks > 0 ? Math.min(maxChunks, loaded.size()) : loaded.size();
+        for (ChunkPos chunkPos : loaded.subList(0, chunks)) {
+            for (int x = Math.max(minX, chunkPos.getStartX()); x <= Math.min(maxX, chunkPos.getEndX()); x++) {
+                for (int z = Math.max(minZ, chunkPos.getStartZ()); z <= Math.min(maxZ, chunkPos.getEndZ()); z++) {
+                    if (findSpawn(world, x, z, mode) != null) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static @Nullable BlockPos findSpawn(ServerWorld world, int x, int z, ValidationMode mode) {
+        return mode == ValidationMode.FULL
+                ? findOverworldSpawn(world, x, z)
+                : findSurfaceSpawn(world, x, z, mode.getStatus());
+    }
+
+    /**
+     * {@link SpawnLocating#findOverworldSpawn(ServerWorld, int, int)} on a
+     * chunk that is only generated up to the given status. Motion blocking
+     * and ocean floor heights are taken from the worldgen heightmaps, as the
+     * final ones do not exist yet.
+     */
+    private static @Nullable BlockPos findSurfaceSpawn(ServerWorld world, int x, int z, ChunkStatus status) {
+        Chunk chunk = world.getChunk(ChunkSectionPos.getSectionCoord(x), ChunkSectionPos.getSectionCoord(z), status);
+        int top = world.getDimension().hasCeiling()
+                ? world.getChunkManager().getChunkGenerator().getSpawnHeight(world)
+                : chunk.sampleHeightmap(Heightmap.Type.WORLD_SURFACE_WG, x & 15, z & 15);
+        if (top < world.getBottomY()) {
+            return null;
+        }
+
+        int surface = chunk.sampleHeightmap(Heightmap.Type.WORLD_SURFACE_WG, x & 15, z & 15);
+        if (surface <= top && surface > chunk.sampleHeightmap(Heightmap.Type.OCEAN_FLOOR_WG, x & 15, z & 15)) {
+            return null;
+        }
+
+        BlockPos.Mutable mutable = new BlockPos.Mutable();
+        for (int y = top + 1; y >= world.getBottomY(); --y) {
+            mutable.set(x, y, z);
+            BlockState blockState = chunk.getBlockState(mutable);
+            if (!blockState.getFluidState().isEmpty()) {
+                break;
+            }
+
+            if (Block.isFaceFullSquare(blockState.getCollisionShape(chunk, mutable), Direction.UP)) {
+                return mutable.up().toImmutable();
+            }
+        }
+        return null;
+    }
+
     private static int calculateSpawnOffsetMultiplier(int horizontalSpawnArea) {
         return horizontalSpawnArea <= 16 ? horizontalSpawnArea - 1 : 17;
     }
@@ -2,33 +2,169 @@ package xyz.verarr.spreadspawnpoints.spawnpoints;
 
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
 import net.minecraft.world.PersistentState;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
+import org.joml.Vector2ic;
 import xyz.verarr.spreadspawnpoints.SpreadSpawnPoints;
+import xyz.verarr.spreadspawnpoints.spawnpoints.registry.FileSpawnPointRegistry;
+import xyz.verarr.spreadspawnpoints.spawnpoints.registry.SpawnPointRegistry;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Keeps track of the spawnpoints of all players in a world.
+ * <p>
+ * Reading assigned spawnpoints is lock-free and safe from any thread.
+ * Assigning and resetting spawnpoints is serialized on this manager, and
+ * the stored spawnpoints are never mutated, so readers always see a
+ * complete spawnpoint.
+ * <p>
+ * Spawnpoints of players who stopped playing are freed according to the
+ * {@link #evictionPolicy}, a few per tick.
+ * <p>
+ * If a {@link SpawnPointRegistry} is set, assignments are shared with other
+ * servers through it. Their changes are polled every
+ * {@link #REGISTRY_POLL_INTERVAL} ticks and before assigning a spawnpoint.
+ * <p>
+ * Assigned spawnpoints are also kept in a spatial index for
+ * {@link #nearest(int, int, int)} and {@link #within(int, int, int)}, which
+ * is updated along with every assignment. It has a lock of its own, so
+ * queries do not wait for a spawnpoint to be generated.
+ */
 public class SpawnPointManager extends PersistentState {
-    private final Map<UUID, Vector2i> playerSpawnPoints = new HashMap<>();
+    /**
+     * Ticks between eviction sweeps.
+     */
+    private static final int EVICTION_INTERVAL = 20 * 60;
+    /**
+     * Spawnpoints checked per tick during an eviction sweep.
+     */
+    private static final int EVICTION_CHECKS_PER_TICK = 256;
+    /**
+     * Ticks between polls of the registry.
+     */
+    private static final int REGISTRY_POLL_INTERVAL = 20;
+    /**
+     * Attempts to reach the registry before a spawnpoint is given up on.
+     */
+    private static final int REGISTRY_ATTEMPTS = 3;
+    /**
+     * Longs per player in the packed layout: the two halves of the UUID, x
+     * and z packed into one long, and when the player was last seen.
+     */
+    private static final int PACKED_LONGS_PER_PLAYER = 4;
+
+    private final Map<UUID, Vector2i> playerSpawnPoints = new ConcurrentHashMap<>();
+    /**
+     * When each player holding a spawnpoint was last online, in milliseconds
+     * since the epoch.
+     */
+    private final Map<UUID, Long> lastSeen = new ConcurrentHashMap<>();
+    /**
+     * Assigned spawnpoints by position, guarded by its own lock.
+     */
+    private final SpawnPointTree<UUID> spawnPointIndex = new SpawnPointTree<>();
 
+    private ServerWorld world;
     public SpawnPointGeneratorManager generatorManager;
+    public final EvictionPolicy evictionPolicy = new EvictionPolicy();
+
+    // eviction state
+    private Iterator<UUID> evictionSweep = null;
+    private long evictionCutoff;
+    private int ticksUntilSweep = 0;
+    private int evictedThisSweep = 0;
+    private long evictedTotal = 0;
+
+    // registry state
+    private @Nullable SpawnPointRegistry registry = null;
+    private @Nullable Path registryDirectory = null;
+    private int ticksUntilRegistryPoll = 0;
+    private final SpawnPointRegistry.Listener registryListener = new RegistryListener();
+
+    /**
+     * An assigned spawnpoint found by a spatial query.
+     *
+     * @param player     UUID of the player holding the spawnpoint
+     * @param spawnPoint the spawnpoint
+     * @param distance   distance of the spawnpoint from the queried position
+     */
+    public record NearbySpawnPoint(UUID player, Vector2ic spawnPoint, double distance) {}
+
+    /**
+     * Outcome of {@link #reserve(UUID, Vector2i)}.
+     */
+    private enum Reservation {
+        RESERVED,
+        /**
+         * Other servers made changes, which have been applied.
+         */
+        CHANGED,
+        /**
+         * Another player already holds the spawnpoint.
+         */
+        TAKEN,
+        UNREACHABLE
+    }
 
     private SpawnPointManager() {}
 
     private SpawnPointManager(ServerWorld world) {
+        this.world = world;
         this.generatorManager = new SpawnPointGeneratorManager(world);
     }
 
     /**
      * Erases all spawnpoints.
      */
-    public void resetSpawnPoints() {
+    public synchronized void resetSpawnPoints() {
+        clearSpawnPoints();
+        withRegistry(SpawnPointRegistry::clear);
+        markDirty();
+    }
+
+    private void clearSpawnPoints() {
         playerSpawnPoints.clear();
+        synchronized (spawnPointIndex) {
+            spawnPointIndex.clear();
+        }
+        lastSeen.clear();
+        evictionSweep = null;
+        generatorManager.clearSpawnPoints();
+    }
+
+    /**
+     * Replaces the spawnpoint generator. Unless the spawnpoints are reset,
+     * the existing assignments are loaded into the new generator in bulk, so
+     * it does not place new spawnpoints on top of them.
+     *
+     * @param identifier       the identifier of the new spawnpoint generator type
+     * @param resetSpawnPoints whether to erase all spawnpoints as well
+     * @see SpawnPointGeneratorManager#setSpawnPointGenerator(Identifier)
+     */
+    public synchronized void setSpawnPointGenerator(Identifier identifier, boolean resetSpawnPoints) {
+        generatorManager.setSpawnPointGenerator(identifier);
+        if (resetSpawnPoints)
+            resetSpawnPoints();
+        else
+            generatorManager.addSpawnPoints(new HashMap<>(playerSpawnPoints));
+        markDirty();
     }
 
     /**
@@ -39,13 +175,170 @@ public class SpawnPointManager extends PersistentState {
      * @return the spawnpoint of the player
      */
     public Vector2i getSpawnPoint(PlayerEntity player) {
-        try {
-            return (Vector2i) playerSpawnPoints.computeIfAbsent(
-                    player.getUuid(),
-                    uuid -> generatorManager.nextSafe()
-            ).clone();
-        } catch (CloneNotSupportedException e) {
-            throw new RuntimeException(e);
+        Vector2i spawnPoint = playerSpawnPoints.get(player.getUuid());
+        if (spawnPoint == null)
+            spawnPoint = assignSpawnPoint(player);
+        return new Vector2i(spawnPoint);
+    }
+
+    /**
+     * The only path through which new spawnpoints are generated and stored.
+     * <p>
+     * If the registry cannot be reached, no spawnpoint is assigned, as it
+     * may conflict with one assigned by another server. The player spawns
+     * at the world spawn instead and gets a spawnpoint next time.
+     */
+    private synchronized Vector2i assignSpawnPoint(PlayerEntity player) {
+        UUID uuid = player.getUuid();
+        Vector2i spawnPoint = playerSpawnPoints.get(uuid);
+        while (spawnPoint == null) {
+            Vector2i candidate = generatorManager.nextSafe(player);
+            Reservation reservation = reserve(uuid, candidate);
+            if (reservation == Reservation.RESERVED) {
+                spawnPoint = candidate;
+                playerSpawnPoints.put(uuid, spawnPoint);
+                index(uuid, null, spawnPoint);
+                lastSeen.put(uuid, System.currentTimeMillis());
+                markDirty();
+                continue;
+            }
+
+            generatorManager.removeSpawnPoint(uuid, candidate);
+            if (reservation == Reservation.UNREACHABLE)
+                return new Vector2i(world.getSpawnPos().getX(), world.getSpawnPos().getZ());
+            // other servers made changes, which may include a spawnpoint for this player
+            spawnPoint = playerSpawnPoints.get(uuid);
+        }
+        return spawnPoint;
+    }
+
+    /**
+     * The only path through which spawnpoints are freed, releasing them in
+     * the generator too.
+     *
+     * @return true if the player had a spawnpoint
+     */
+    private synchronized boolean unassignSpawnPoint(UUID player) {
+        Vector2i spawnPoint = playerSpawnPoints.remove(player);
+        lastSeen.remove(player);
+        if (spawnPoint == null)
+            return false;
+        unindex(player, spawnPoint);
+        generatorManager.removeSpawnPoint(player, spawnPoint);
+        withRegistry(registry -> registry.release(player, spawnPoint));
+        markDirty();
+        return true;
+    }
+
+    /**
+     * Assigns many spawnpoints at once, e.g. when importing them from
+     * another world. Existing spawnpoints of the same players are replaced.
+     * The spawnpoints are added to the generator in bulk and are not
+     * validated.
+     *
+     * @param spawnPoints spawnpoints to assign, by the UUID of their player
+     */
+    public synchronized void importSpawnPoints(Map<UUID, Vector2i> spawnPoints) {
+        long now = System.currentTimeMillis();
+        List<SpawnPointTree.Entry<UUID>> entries = new ArrayList<>(spawnPoints.size());
+        spawnPoints.forEach((player, spawnPoint) -> {
+            Vector2i previous = playerSpawnPoints.put(player, spawnPoint);
+            if (previous != null) {
+                unindex(player, previous);
+                generatorManager.removeSpawnPoint(player, previous);
+            }
+            lastSeen.putIfAbsent(player, now);
+            entries.add(new SpawnPointTree.Entry<>(spawnPoint.x, spawnPoint.y, 0, player));
+        });
+        synchronized (spawnPointIndex) {
+            spawnPointIndex.addAll(entries);
+        }
+        generatorManager.addSpawnPoints(spawnPoints);
+        withRegistry(registry -> registry.publish(spawnPoints));
+        markDirty();
+    }
+
+    /**
+     * Gets the spawnpoint of a player without generating one. Safe to call
+     * from any thread.
+     *
+     * @param player UUID of the player
+     * @return the spawnpoint of the player, or <code>null</code> if none has
+     * been assigned
+     */
+    public @Nullable Vector2ic getAssignedSpawnPoint(UUID player) {
+        return playerSpawnPoints.get(player);
+    }
+
+    /**
+     * Gets a read-only, weakly consistent view of all assigned spawnpoints.
+     * Safe to iterate from any thread while spawnpoints are being assigned.
+     *
+     * @return map of player UUIDs to their spawnpoints
+     */
+    public Map<UUID, Vector2ic> getAssignedSpawnPoints() {
+        return Collections.unmodifiableMap(playerSpawnPoints);
+    }
+
+    /**
+     * Finds the assigned spawnpoints closest to a position. Safe to call
+     * from any thread.
+     *
+     * @param x x coordinate
+     * @param z z coordinate
+     * @param k maximum amount of spawnpoints to return
+     * @return up to <code>k</code> spawnpoints, closest first
+     */
+    public List<NearbySpawnPoint> nearest(int x, int z, int k) {
+        List<SpawnPointTree.Entry<UUID>> entries;
+        synchronized (spawnPointIndex) {
+            entries = spawnPointIndex.nearest(x, z, k);
+        }
+        return toNearby(entries, x, z);
+    }
+
+    /**
+     * Finds all assigned spawnpoints within a distance of a position. Safe
+     * to call from any thread.
+     *
+     * @param x      x coordinate
+     * @param z      z coordinate
+     * @param radius greatest distance, inclusive
+     * @return matching spawnpoints, closest first
+     */
+    public List<NearbySpawnPoint> within(int x, int z, int radius) {
+        List<SpawnPointTree.Entry<UUID>> entries;
+        synchronized (spawnPointIndex) {
+            entries = spawnPointIndex.within(x, z, radius);
+        }
+        List<NearbySpawnPoint> nearby = toNearby(entries, x, z);
+        nearby.sort(Comparator.comparingDouble(NearbySpawnPoint::distance));
+        return nearby;
+    }
+
+    private static List<NearbySpawnPoint> toNearby(List<SpawnPointTree.Entry<UUID>> entries, int x, int z) {
+        List<NearbySpawnPoint> nearby = new ArrayList<>(entries.size());
+        for (SpawnPointTree.Entry<UUID> entry : entries) {
+            nearby.add(new NearbySpawnPoint(
+                    entry.value(),
+                    new Vector2i(entry.x(), entry.z()),
+                    Math.hypot(entry.x() - (double) x, entry.z() - (double) z)
+            ));
+        }
+        return nearby;
+    }
+
+    private void index(UUID player, @Nullable Vector2i previous, Vector2i spawnPoint) {
+        synchronized (spawnPointIndex) {
+            if (previous != null)
+                spawnPointIndex.remove(previous.x, previous.y, player);
+            spawnPointIndex.add(spawnPoint.x, spawnPoint.y, 0, player);
+        }
+    }
+
+    private void unindex(UUID player, Vector2i spawnPoint) {
+        synchronized (spawnPointIndex) {
+            spawnPointIndex.remove(spawnPoint.x, spawnPoint.y, player);
         }
     }
 
@@ -58,34 +351,362 @@ public class SpawnPointManager extends PersistentState {
      * @see #resetSpawnPoints()
      */
     public boolean resetSpawnPoint(PlayerEntity player) {
-        return Objects.nonNull(playerSpawnPoints.remove(player.getUuid()));
+        return unassignSpawnPoint(player.getUuid());
+    }
+
+    /**
+     * Records that a player is online now, postponing the eviction of their
+     * spawnpoint.
+     *
+     * @param player UUID of the player
+     */
+    public void markSeen(UUID player) {
+        if (playerSpawnPoints.containsKey(player)) {
+            lastSeen.put(player, System.currentTimeMillis());
+            markDirty();
+        }
+    }
+
+    /**
+     * @return timestamp before which players are stale under the current
+     * policy, or {@link Long#MIN_VALUE} if nobody is
+     */
+    private long computeEvictionCutoff() {
+        long cutoff = Long.MIN_VALUE;
+        if (evictionPolicy.getMaxIdleDays() > 0)
+            cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(evictionPolicy.getMaxIdleDays());
+        int maxPlayers = evictionPolicy.getMaxPlayers();
+        if (maxPlayers > 0 && lastSeen.size() > maxPlayers) {
+            long[] times = new long[lastSeen.size()];
+            int count = 0;
+            for (Long seen : lastSeen.values()) {
+                if (count == times.length) break;
+                times[count++] = seen;
+            }
+            if (count > maxPlayers)
+                cutoff = Math.max(cutoff, select(times, count, count - maxPlayers));
+        }
+        return cutoff;
+    }
+
+    /**
+     * Finds the <code>k</code>th smallest of the first <code>length</code>
+     * values in <i>O(n)</i> on average, reordering them, instead of sorting
+     * them all.
+     */
+    private static long select(long[] values, int length, int k) {
+        int low = 0, high = length - 1;
+        while (low < high) {
+            long pivot = values[(low + high) >>> 1];
+            int i = low, j = high;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    long swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else break;
+        }
+        return values[k];
+    }
+
+    private boolean isStale(UUID player, long cutoff) {
+        Long seen = lastSeen.get(player);
+        return seen != null && seen < cutoff &&
+                world.getServer().getPlayerManager().getPlayer(player) == null;
+    }
+
+    /**
+     * Advances eviction by a bounded amount of work. Once per
+     * {@link #EVICTION_INTERVAL} ticks a sweep over all spawnpoints starts,
+     * which then checks {@link #EVICTION_CHECKS_PER_TICK} spawnpoints per
+     * tick.
+     */
+    public synchronized void tickEviction() {
+        if (evictionSweep == null) {
+            if (--ticksUntilSweep > 0 || !evictionPolicy.isEnabled())
+                return;
+            ticksUntilSweep = EVICTION_INTERVAL;
+            evictionCutoff = computeEvictionCutoff();
+            if (evictionCutoff == Long.MIN_VALUE)
+                return;
+            evictionSweep = new ArrayList<>(playerSpawnPoints.keySet()).iterator();
+            evictedThisSweep = 0;
+        }
+
+        for (int i = 0; i < EVICTION_CHECKS_PER_TICK && evictionSweep.hasNext(); i++) {
+            UUID player = evictionSweep.next();
+            if (isStale(player, evictionCutoff) && unassignSpawnPoint(player))
+                evictedThisSweep++;
+        }
+
+        if (!evictionSweep.hasNext()) {
+            evictionSweep = null;
+            evictedTotal += evictedThisSweep;
+            if (evictedThisSweep > 0)
+                SpreadSpawnPoints.LOGGER.info("Evicted {} stale spawnpoints in {}", evictedThisSweep, world.getRegistryKey().getValue());
+        }
+    }
+
+    /**
+     * Evicts all stale spawnpoints at once.
+     *
+     * @return amount of evicted spawnpoints
+     */
+    public synchronized int evictNow() {
+        evictionSweep = null;
+        long cutoff = computeEvictionCutoff();
+        if (cutoff == Long.MIN_VALUE)
+            return 0;
+        int evicted = 0;
+        for (UUID player : new ArrayList<>(playerSpawnPoints.keySet())) {
+            if (isStale(player, cutoff) && unassignSpawnPoint(player))
+                evicted++;
+        }
+        evictedTotal += evicted;
+        return evicted;
+    }
+
+    /**
+     * @return amount of spawnpoints evicted over the lifetime of the world
+     */
+    public long getEvictedTotal() {
+        return evictedTotal;
+    }
+
+    /**
+     * @return the registry assignments are shared through, or
+     * <code>null</code> if they are not shared
+     */
+    public @Nullable SpawnPointRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Shares assignments with other servers through a
+     * {@link FileSpawnPointRegistry} in the given directory, or stops
+     * sharing them.
+     * <p>
+     * Assignments already in the registry take precedence over local ones
+     * of the same player; local assignments of other players are published.
+     *
+     * @param directory shared directory, or <code>null</code> to stop sharing
+     * @throws IOException if the registry could not be opened or read
+     */
+    public synchronized void setRegistry(@Nullable Path directory) throws IOException {
+        closeRegistry();
+        registryDirectory = null;
+        markDirty();
+        if (directory == null)
+            return;
+
+        SpawnPointRegistry newRegistry = new FileSpawnPointRegistry(directory,
+                world.getRegistryKey().getValue().toString().replace(':', '_').replace('/', '_'));
+        Map<UUID, Vector2i> shared = new HashMap<>();
+        try {
+            newRegistry.poll(new SpawnPointRegistry.Listener() {
+                @Override
+                public void assigned(UUID player, Vector2i spawnPoint) {
+                    shared.put(player, spawnPoint);
+                }
+
+                @Override
+                public void released(UUID player, Vector2i spawnPoint) {
+                    shared.remove(player, spawnPoint);
+                }
+
+                @Override
+                public void cleared() {
+                    shared.clear();
+                }
+            });
+            Map<UUID, Vector2i> localOnly = new HashMap<>(playerSpawnPoints);
+            localOnly.keySet().removeAll(shared.keySet());
+            newRegistry.publish(localOnly);
+        } catch (IOException e) {
+            newRegistry.close();
+            throw e;
+        }
+        shared.forEach(registryListener::assigned);
+
+        registry = newRegistry;
+        registryDirectory = directory;
+        SpreadSpawnPoints.LOGGER.info("Sharing spawnpoints of {} through {}", world.getRegistryKey().getValue(), registry.describe());
+    }
+
+    /**
+     * Stops sharing assignments until the world is loaded again, keeping the
+     * registry configured.
+     */
+    public synchronized void closeRegistry() {
+        if (registry == null)
+            return;
+        try {
+            registry.close();
+        } catch (IOException e) {
+            SpreadSpawnPoints.LOGGER.warn("Failed to close spawnpoint registry {}: {}", registry.describe(), e.toString());
+        }
+        registry = null;
+    }
+
+    /**
+     * Receives changes from other servers once per
+     * {@link #REGISTRY_POLL_INTERVAL} ticks.
+     */
+    public synchronized void tickRegistry() {
+        if (registry == null || --ticksUntilRegistryPoll > 0)
+            return;
+        ticksUntilRegistryPoll = REGISTRY_POLL_INTERVAL;
+        withRegistry(registry -> registry.poll(registryListener));
+    }
+
+    /**
+     * Claims a spawnpoint, unless another player already holds it.
+     * <p>
+     * That is checked against the local copy of the assignments first. The
+     * registry only accepts the reservation if the local copy was up to
+     * date, so the check holds for the assignments of all servers.
+     */
+    private Reservation reserve(UUID player, Vector2i spawnPoint) {
+        if (!generatorManager.sharesSpawnPoints() && isHeldByOther(player, spawnPoint))
+            return Reservation.TAKEN;
+        if (registry == null)
+            return Reservation.RESERVED;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return registry.reserve(player, spawnPoint, registryListener)
+                        ? Reservation.RESERVED
+                        : Reservation.CHANGED;
+            } catch (IOException e) {
+                if (attempt >= REGISTRY_ATTEMPTS) {
+                    SpreadSpawnPoints.LOGGER.error("Failed to reserve spawnpoint in registry {}, not assigning one to {}: {}",
+                            registry.describe(), player, e.toString());
+                    return Reservation.UNREACHABLE;
+                }
+                SpreadSpawnPoints.LOGGER.warn("Failed to reserve spawnpoint in registry {}, retrying: {}", registry.describe(), e.toString());
+            }
+        }
+    }
+
+    private boolean isHeldByOther(UUID player, Vector2i spawnPoint) {
+        synchronized (spawnPointIndex) {
+            return spawnPointIndex.within(spawnPoint.x, spawnPoint.y, 0).stream()
+                    .anyMatch(entry -> !player.equals(entry.value()));
+        }
+    }
+
+    @FunctionalInterface
+    private interface RegistryOperation {
+        void run(SpawnPointRegistry registry) throws IOException;
+    }
+
+    private void withRegistry(RegistryOperation operation) {
+        if (registry == null)
+            return;
+        try {
+            operation.run(registry);
+        } catch (IOException e) {
+            SpreadSpawnPoints.LOGGER.warn("Failed to access spawnpoint registry {}: {}", registry.describe(), e.toString());
+        }
+    }
+
+    /**
+     * Applies changes made by other servers, without publishing them again.
+     * Only called while holding the lock on the manager.
+     */
+    private class RegistryListener implements SpawnPointRegistry.Listener {
+        @Override
+        public void assigned(UUID player, Vector2i spawnPoint) {
+            Vector2i previous = playerSpawnPoints.put(player, spawnPoint);
+            index(player, previous, spawnPoint);
+            if (previous != null)
+                generatorManager.removeSpawnPoint(player, previous);
+            lastSeen.putIfAbsent(player, System.currentTimeMillis());
+            generatorManager.addSpawnPoint(player, spawnPoint);
+            markDirty();
+        }
+
+        @Override
+        public void released(UUID player, Vector2i spawnPoint) {
+            if (!playerSpawnPoints.remove(player, spawnPoint))
+                return;
+            unindex(player, spawnPoint);
+            lastSeen.remove(player);
+            generatorManager.removeSpawnPoint(player, spawnPoint);
+            markDirty();
+        }
+
+        @Override
+        public void cleared() {
+            clearSpawnPoints();
+            markDirty();
+        }
     }
 
     // PersistentState stuff
     @Override
     public NbtCompound writeNbt(NbtCompound nbt) {
+        // one compound per player, which older versions can read too
         NbtCompound playerSpawnPointsNbt = new NbtCompound();
         playerSpawnPoints.forEach((uuid, spawnPoint) -> {
             NbtCompound playerNbt = new NbtCompound();
             playerNbt.putInt("x", spawnPoint.x);
             playerNbt.putInt("z", spawnPoint.y);
+            playerNbt.putLong("lastSeen", lastSeen.getOrDefault(uuid, System.currentTimeMillis()));
             playerSpawnPointsNbt.put(uuid.toString(), playerNbt);
         });
         nbt.put("playerSpawnPoints", playerSpawnPointsNbt);
 
+        nbt.put("eviction", evictionPolicy.writeNbt());
+        nbt.putLong("evictedSpawnPoints", evictedTotal);
+
         nbt.putString("spawnPointGenerator", generatorManager.getSpawnPointGenerator().toString());
 
         nbt.put("spawnPointGeneratorData", generatorManager.writeNbt());
 
+        nbt.put("exclusionZones", generatorManager.exclusionZones.writeNbt());
+        nbt.put("structureFilter", generatorManager.structureFilter.writeNbt());
+        nbt.putString("validationMode", generatorManager.getValidationMode().getName());
+        nbt.putString("scanStrategy", generatorManager.getScanStrategy().getName());
+        nbt.putInt("scanMaxChunks", generatorManager.getScanMaxChunks());
+        nbt.putString("generatedTerrain", generatorManager.getGeneratedTerrainMode().getName());
+        if (registryDirectory != null)
+            nbt.putString("registry", registryDirectory.toString());
+
         return nbt;
     }
 
     public static SpawnPointManager createFromNbt(NbtCompound tag, ServerWorld world) {
         SpawnPointManager spawnPointManager = new SpawnPointManager();
 
+        spawnPointManager.world = world;
         spawnPointManager.generatorManager = new SpawnPointGeneratorManager(world);
         spawnPointManager.generatorManager.setSpawnPointGenerator(new Identifier(tag.getString("spawnPointGenerator")));
+        // settings first, so spawnpoints are added with them in effect
+        spawnPointManager.generatorManager.modifyFromNbt(tag.getCompound("spawnPointGeneratorData"));
+        spawnPointManager.generatorManager.exclusionZones.modifyFromNbt(tag.getList("exclusionZones", NbtElement.COMPOUND_TYPE));
+        spawnPointManager.generatorManager.structureFilter.modifyFromNbt(tag.getCompound("structureFilter"));
+        ValidationMode validationMode = ValidationMode.byName(tag.getString("validationMode"));
+        if (validationMode != null)
+            spawnPointManager.generatorManager.setValidationMode(validationMode);
+        ScanStrategy scanStrategy = ScanStrategy.byName(tag.getString("scanStrategy"));
+        if (scanStrategy != null)
+            spawnPointManager.generatorManager.setScanStrategy(scanStrategy, Math.max(0, tag.getInt("scanMaxChunks")));
+        GeneratedTerrainMode generatedTerrainMode = GeneratedTerrainMode.byName(tag.getString("generatedTerrain"));
+        if (generatedTerrainMode != null)
+            spawnPointManager.generatorManager.setGeneratedTerrainMode(generatedTerrainMode);
+        spawnPointManager.evictionPolicy.modifyFromNbt(tag.getCompound("eviction"));
+        spawnPointManager.evictedTotal = tag.getLong("evictedSpawnPoints");
 
+        long now = System.currentTimeMillis();
+
+        Map<UUID, Vector2i> spawnPoints = new HashMap<>();
+        // one compound per player
         NbtCompound playerSpawnPointsNbt = tag.getCompound("playerSpawnPoints");
         playerSpawnPointsNbt.getKeys().forEach(key -> {
             UUID uuid = UUID.fromString(key);
@@ -95,25 +716,90 @@ public class SpawnPointManager extends PersistentState {
                     playerNbt.getInt("z")
             );
             spawnPointManager.playerSpawnPoints.put(uuid, spawnPoint);
-            spawnPointManager.generatorManager.addSpawnPoint(spawnPoint);
+            // spawnpoints saved before activity was tracked count as active now
+            spawnPointManager.lastSeen.put(uuid, playerNbt.contains("lastSeen", NbtElement.LONG_TYPE) ? playerNbt.getLong("lastSeen") : now);
+            spawnPoints.put(uuid, spawnPoint);
         });
-        spawnPointManager.generatorManager.modifyFromNbt(tag.getCompound("spawnPointGeneratorData"));
+        // packed layout, written by the offline tools
+        long[] packed = tag.getLongArray("playerSpawnPointsPacked");
+        for (int i = 0; i + PACKED_LONGS_PER_PLAYER <= packed.length; i += PACKED_LONGS_PER_PLAYER) {
+            UUID uuid = new UUID(packed[i], packed[i + 1]);
+            Vector2i spawnPoint = new Vector2i((int) (packed[i + 2] >> 32), (int) packed[i + 2]);
+            spawnPointManager.playerSpawnPoints.put(uuid, spawnPoint);
+            // 0 marks spawnpoints converted from before activity was tracked
+            spawnPointManager.lastSeen.put(uuid, packed[i + 3] != 0 ? packed[i + 3] : now);
+            spawnPoints.put(uuid, spawnPoint);
+        }
+        spawnPointManager.generatorManager.addSpawnPoints(spawnPoints);
+        List<SpawnPointTree.Entry<UUID>> entries = new ArrayList<>(spawnPoints.size());
+        spawnPoints.forEach((uuid, spawnPoint) -> entries.add(new SpawnPointTree.Entry<>(spawnPoint.x, spawnPoint.y, 0, uuid)));
+        spawnPointManager.spawnPointIndex.addAll(entries);
+
+        if (tag.contains("registry", NbtElement.STRING_TYPE)) {
+            Path registryDirectory = Path.of(tag.getString("registry"));
+            try {
+                spawnPointManager.setRegistry(registryDirectory);
+            } catch (IOException e) {
+                // keep it configured, so it is used again once reachable
+                spawnPointManager.registryDirectory = registryDirectory;
+                SpreadSpawnPoints.LOGGER.error("Failed to open spawnpoint registry {}: {}", registryDirectory, e.toString());
+            }
+        }
         return spawnPointManager;
     }
 
     /**
      * Get the SpawnPointManager instance associated with a world.
+     * <p>
+     * The instance is loaded from the persistent state manager once and then
+     * kept on the world itself, so later calls are a single field read. It is
+     * not marked dirty here; every change marks it dirty instead, so
+     * unchanged data is not saved again on every autosave.
      *
      * @param world the world to get the manager instance for
      * @return SpawnPointManager instance for the specified world
+     * @see SpawnPointManagerHolder
      */
     public static SpawnPointManager getInstance(ServerWorld world) {
-        SpawnPointManager spawnPointManager = world.getPersistentStateManager().getOrCreate(
-                tag -> createFromNbt(tag, world),
-                () -> new SpawnPointManager(world),
-                SpreadSpawnPoints.MOD_ID
-        );
-        spawnPointManager.markDirty(); // mark dirty always, as per the Fabric wiki
+        SpawnPointManagerHolder holder = (SpawnPointManagerHolder) world;
+        SpawnPointManager spawnPointManager = holder.spreadspawnpoints$getSpawnPointManager();
+        if (spawnPointManager == null) {
+            spawnPointManager = world.getPersistentStateManager().getOrCreate(
+                    tag -> createFromNbt(tag, world),
+                    () -> new SpawnPointManager(world),
+                    SpreadSpawnPoints.MOD_ID
+            );
+            holder.spreadspawnpoints$setSpawnPointManager(spawnPointManager);
+        }
         return spawnPointManager;
     }
+
+    /**
+     * Get the SpawnPointManager instance of a world only if it has already
+     * been loaded.
+     *
+     * @param world the world to get the manager instance for
+     * @return SpawnPointManager instance for the specified world, or
+     * <code>null</code> if it hasn't been loaded
+     */
+    public static @Nullable SpawnPointManager getLoadedInstance(ServerWorld world) {
+        return ((SpawnPointManagerHolder) world).spreadspawnpoints$getSpawnPointManager();
+    }
+
+    /**
+     * Records that a player is online in every world they may hold a
+     * spawnpoint in. The overworld's manager is loaded if needed, as most
+     * spawnpoints live there.
+     *
+     * @param player the player that joined or left
+     */
+    public static void onPlayerSeen(ServerPlayerEntity player) {
+        for (ServerWorld world : player.getServer().getWorlds()) {
+            SpawnPointManager spawnPointManager = world == player.getServer().getOverworld()
+                    ? getInstance(world)
+                    : getLoadedInstance(world);
+            if (spawnPointManager != null)
+                spawnPointManager.markSeen(player.getUuid());
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Implemented by every <code>ServerWorld</code> through a mixin, to keep its
+ * {@link SpawnPointManager} at hand without going through the persistent
+ * state manager.
+ *
+ * @see SpawnPointManager#getInstance(net.minecraft.server.world.ServerWorld)
+ */
+public interface SpawnPointManagerHolder {
+    @Nullable SpawnPointManager spreadspawnpoints$getSpawnPointManager();
+
+    void spreadspawnpoints$setSpawnPointManager(SpawnPointManager spawnPointManager);
+}
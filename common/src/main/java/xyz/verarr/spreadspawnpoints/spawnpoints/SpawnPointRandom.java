@@ -0,0 +1,104 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+/**
+ * Counter-based random number generator for spawnpoint candidates.
+ * <p>
+ * Every value is a pure function of the seed, the index of the candidate
+ * and the index of the draw within that candidate, hashed with the
+ * SplitMix64 finalizer. Candidate <i>n</i> is therefore the same no matter
+ * which thread draws it or in what order, so candidates can be generated
+ * in parallel with results identical to a serial run. The only state is
+ * the seed and the index of the next candidate.
+ */
+public class SpawnPointRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long DRAW_GAMMA = 0xD1B54A32D192ED03L;
+
+    private long seed;
+    private long counter = 0;
+
+    public SpawnPointRandom(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Changes the seed and starts over at the first candidate.
+     *
+     * @param seed the new seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.counter = 0;
+    }
+
+    /**
+     * @return the index of the next candidate
+     */
+    public long getCounter() {
+        return counter;
+    }
+
+    public void setCounter(long counter) {
+        this.counter = counter;
+    }
+
+    /**
+     * @return the draws for the next candidate, advancing the counter
+     */
+    public Sample next() {
+        return at(counter++);
+    }
+
+    /**
+     * Get the draws for any candidate without advancing the counter. Safe to
+     * call from any thread.
+     *
+     * @param index index of the candidate
+     * @return the draws for the candidate
+     */
+    public Sample at(long index) {
+        return new Sample(mix(seed + index * GOLDEN_GAMMA));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The random values of a single candidate.
+     */
+    public static final class Sample {
+        private final long key;
+        private int draw = 0;
+
+        private Sample(long key) {
+            this.key = key;
+        }
+
+        public long nextLong() {
+            return mix(key + ++draw * DRAW_GAMMA);
+        }
+
+        /**
+         * @return a value in [0, 1)
+         */
+        public double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        /**
+         * @return a value between <code>min</code> and <code>max</code>, both inclusive
+         */
+        public int nextBetween(int min, int max) {
+            if (max < min) throw new IllegalArgumentException("max must not be less than min");
+            long span = (long) max - min + 1;
+            return (int) (min + Math.floorMod(nextLong(), span));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
+import org.joml.Vector2i;
+import org.joml.Vector2ic;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Exports and imports spawnpoint assignments as CSV files in the
+ * <code>spawnpoints</code> directory of the world.
+ * <p>
+ * Each line holds the UUID of a player and the x and z coordinates of their
+ * spawnpoint, optionally followed by a y coordinate, which is ignored as
+ * spawnpoints are columns. Files are streamed on a worker thread; imports
+ * are handed to the server thread in batches of {@value #BATCH_SIZE}, and
+ * the next batch is only read once the previous one has been assigned, so
+ * memory use does not grow with the file. An import is aborted if the
+ * server stops while a batch is waiting for the server thread.
+ */
+public class SpawnPointTransfer {
+    private static final String HEADER = "uuid,x,z";
+    private static final int BATCH_SIZE = 4096;
+    private static final long POLL_MILLIS = 500;
+
+    /**
+     * Outcome of an export or import.
+     *
+     * @param spawnPoints amount of spawnpoints transferred
+     * @param skipped     amount of lines that could not be read
+     * @param nanos       time taken in nanoseconds
+     */
+    public record Result(long spawnPoints, long skipped, long nanos) {
+        public double perSecond() {
+            return nanos == 0 ? 0 : spawnPoints * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Resolves the name of a file in the <code>spawnpoints</code> directory
+     * of the world.
+     *
+     * @param server server of the world
+     * @param name   file name
+     * @return path of the file
+     * @throws IllegalArgumentException if the name leads outside the
+     *                                  directory
+     */
+    public static Path resolve(MinecraftServer server, String name) {
+        Path directory = server.getSavePath(WorldSavePath.ROOT).resolve("spawnpoints").normalize();
+        Path file = directory.resolve(name).normalize();
+        if (!file.startsWith(directory) || file.equals(directory))
+            throw new IllegalArgumentException("File must be inside the spawnpoints directory of the world");
+        return file;
+    }
+
+    /**
+     * Writes all assigned spawnpoints to a file in the background.
+     *
+     * @param spawnPointManager spawnpoints to export
+     * @param file              file to write, replaced if it exists
+     * @return future completed once the file has been written
+     */
+    public static CompletableFuture<Result> exportTo(SpawnPointManager spawnPointManager, Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            long count = 0;
+            try {
+                Files.createDirectories(file.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    writer.write(HEADER);
+                    writer.newLine();
+                    for (Map.Entry<UUID, Vector2ic> entry : spawnPointManager.getAssignedSpawnPoints().entrySet()) {
+                        writer.write(entry.getKey() + "," + entry.getValue().x() + "," + entry.getValue().y());
+                        writer.newLine();
+                        count++;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Result(count, 0, System.nanoTime() - start);
+        }, Util.getIoWorkerExecutor());
+    }
+
+    /**
+     * Reads spawnpoints from a file in the background and assigns them on
+     * the server thread, replacing existing spawnpoints of the same players.
+     *
+     * @param spawnPointManager manager to assign the spawnpoints in
+     * @param server            server to assign the spawnpoints on
+     * @param file              file to read
+     * @return future completed once all spawnpoints have been assigned, or
+     * completed exceptionally if the server stopped first
+     * @see SpawnPointManager#importSpawnPoints(Map)
+     */
+    public static CompletableFuture<Result> importFrom(SpawnPointManager spawnPointManager, MinecraftServer server, Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            long count = 0, skipped = 0;
+            Map<UUID, Vector2i> batch = new HashMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.equals(HEADER) || line.startsWith("uuid,"))
+                        continue;
+                    String[] fields = line.split(",");
+                    try {
+                        if (fields.length < 3 || fields.length > 4)
+                            throw new IllegalArgumentException();
+                        batch.put(UUID.fromString(fields[0].trim()), new Vector2i(
+                                Integer.parseInt(fields[1].trim()),
+                                Integer.parseInt(fields[2].trim())
+                        ));
+                    } catch (IllegalArgumentException e) {
+                        skipped++;
+                        continue;
+                    }
+                    if (batch.size() >= BATCH_SIZE) {
+                        count += batch.size();
+                        submit(spawnPointManager, server, batch);
+                        batch = new HashMap<>();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count += batch.size();
+            submit(spawnPointManager, server, batch);
+            return new Result(count, skipped, System.nanoTime() - start);
+        }, Util.getIoWorkerExecutor());
+    }
+
+    /**
+     * Assigns a batch on the server thread and waits for it. Waiting is done
+     * in steps of {@value #POLL_MILLIS} ms, so the import is aborted instead
+     * of blocking the worker forever if the server stops before it runs the
+     * batch.
+     *
+     * @throws CancellationException if the server stopped or the worker was
+     *                               interrupted
+     */
+    private static void submit(SpawnPointManager spawnPointManager, MinecraftServer server, Map<UUID, Vector2i> batch) {
+        if (batch.isEmpty()) return;
+        CompletableFuture<Void> future = server.submit(() -> spawnPointManager.importSpawnPoints(batch));
+        while (true) {
+            try {
+                future.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                if (!server.isRunning()) {
+                    future.cancel(false);
+                    throw new CancellationException("Server stopped during import");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(false);
+                throw new CancellationException("Import interrupted");
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import java.util.*;
+
+/**
+ * A 2-dimensional k-d tree of spawnpoints, each claiming a circle of its own
+ * radius around it.
+ * <p>
+ * Every node keeps the bounding box and the largest radius of its subtree,
+ * so queries can skip subtrees that cannot contain a match regardless of
+ * how the radii are mixed. Removal is lazy and the tree is rebuilt
+ * balanced whenever it has grown or shrunk too much since the last build,
+ * which keeps queries at <i>O(log n)</i> on average.
+ *
+ * @param <T> type of the value attached to each spawnpoint
+ */
+public class SpawnPointTree<T> {
+    private static final int REBUILD_MINIMUM = 64;
+
+    /**
+     * A spawnpoint in the tree.
+     *
+     * @param x      x coordinate
+     * @param z      z coordinate
+     * @param radius radius claimed by this spawnpoint
+     * @param value  attached value, may be <code>null</code>
+     */
+    public record Entry<T>(int x, int z, int radius, T value) {}
+
+    private static final class Node<T> {
+        private final Entry<T> entry;
+        private final boolean splitX;
+        private Node<T> left;
+        private Node<T> right;
+        private boolean removed = false;
+        private int minX, minZ, maxX, maxZ;
+        private int maxRadius;
+
+        private Node(Entry<T> entry, boolean splitX) {
+            this.entry = entry;
+            this.splitX = splitX;
+            this.minX = this.maxX = entry.x();
+            this.minZ = this.maxZ = entry.z();
+            this.maxRadius = entry.radius();
+        }
+
+        private void include(Entry<T> other) {
+            minX = Math.min(minX, other.x());
+            minZ = Math.min(minZ, other.z());
+            maxX = Math.max(maxX, other.x());
+            maxZ = Math.max(maxZ, other.z());
+            maxRadius = Math.max(maxRadius, other.radius());
+        }
+
+        private boolean goesLeft(int x, int z) {
+            return splitX ? x < entry.x() : z < entry.z();
+        }
+
+        private long distanceSquared(int x, int z) {
+            long dx = Math.max(0, Math.max(minX - x, x - maxX));
+            long dz = Math.max(0, Math.max(minZ - z, z - maxZ));
+            return dx * dx + dz * dz;
+        }
+    }
+
+    private Node<T> root = null;
+    private int size = 0;
+    private int removed = 0;
+    private int insertedSinceBuild = 0;
+    private int sizeAtBuild = 0;
+
+    /**
+     * @return amount of spawnpoints in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+        removed = 0;
+        insertedSinceBuild = 0;
+        sizeAtBuild = 0;
+    }
+
+    public void add(int x, int z, int radius, T value) {
+        Entry<T> entry = new Entry<>(x, z, radius, value);
+        size++;
+        if (root == null) {
+            root = new Node<>(entry, true);
+            return;
+        }
+
+        Node<T> node = root;
+        while (true) {
+            node.include(entry);
+            boolean left = node.goesLeft(x, z);
+            Node<T> child = left ? node.left : node.right;
+            if (child == null) {
+                child = new Node<>(entry, !node.splitX);
+                if (left) node.left = child;
+                else node.right = child;
+                break;
+            }
+            node = child;
+        }
+
+        if (++insertedSinceBuild > Math.max(REBUILD_MINIMUM, sizeAtBuild))
+            rebuild(List.of());
+    }
+
+    /**
+     * Adds many spawnpoints at once, rebuilding the tree balanced in
+     * <i>O(n log n)</i>. Batches that are small compared to the tree are
+     * inserted one by one instead.
+     *
+     * @param entries spawnpoints to add
+     */
+    public void addAll(Collection<Entry<T>> entries) {
+        if (entries.size() < size / 4) {
+            entries.forEach(entry -> add(entry.x(), entry.z(), entry.radius(), entry.value()));
+            return;
+        }
+        rebuild(entries);
+    }
+
+    /**
+     * Removes a spawnpoint at the specified position.
+     *
+     * @param x     x coordinate
+     * @param z     z coordinate
+     * @param value the value attached to the spawnpoint, or
+     *              <code>null</code> to remove any spawnpoint at the position
+     * @return true if a spawnpoint was removed
+     */
+    public boolean remove(int x, int z, T value) {
+        Node<T> node = find(root, x, z, value);
+        if (node == null)
+            return false;
+
+        node.removed = true;
+        size--;
+        if (++removed > Math.max(REBUILD_MINIMUM, size))
+            rebuild(List.of());
+        return true;
+    }
+
+    private Node<T> find(Node<T> node, int x, int z, T value) {
+        if (node == null || node.distanceSquared(x, z) > 0)
+            return null;
+        if (!node.removed && node.entry.x() == x && node.entry.z() == z &&
+                (value == null || value.equals(node.entry.value())))
+            return node;
+        Node<T> found = find(node.left, x, z, value);
+        return found != null ? found : find(node.right, x, z, value);
+    }
+
+    /**
+     * Test if a new spawnpoint claiming <code>radius</code> would conflict
+     * with any spawnpoint in the tree, as in either one lies within the
+     * other's radius.
+     *
+     * @return true if there is a conflicting spawnpoint
+     */
+    public boolean anyConflict(int x, int z, int radius) {
+        return anyConflict(root, x, z, radius);
+    }
+
+    private boolean anyConflict(Node<T> node, int x, int z, int radius) {
+        if (node == null)
+            return false;
+        long reach = Math.max(radius, node.maxRadius);
+        if (node.distanceSquared(x, z) >= reach * reach)
+            return false;
+
+        if (!node.removed) {
+            long dx = node.entry.x() - x;
+            long dz = node.entry.z() - z;
+            long conflictRadius = Math.max(radius, node.entry.radius());
+            if (dx * dx + dz * dz < conflictRadius * conflictRadius)
+                return true;
+        }
+        return anyConflict(node.left, x, z, radius) || anyConflict(node.right, x, z, radius);
+    }
+
+    /**
+     * Finds the spawnpoints closest to a position, ignoring their radii.
+     * Subtrees are visited nearest first and skipped once their bounding box
+     * is farther away than the <code>k</code>th closest spawnpoint found so
+     * far.
+     *
+     * @param x x coordinate
+     * @param z z coordinate
+     * @param k maximum amount of spawnpoints to return
+     * @return up to <code>k</code> spawnpoints, closest first
+     */
+    public List<Entry<T>> nearest(int x, int z, int k) {
+        if (k <= 0)
+            return List.of();
+        // farthest of the best candidates on top
+        PriorityQueue<Entry<T>> best = new PriorityQueue<>(k + 1,
+                Comparator.<Entry<T>>comparingLong(entry -> distanceSquared(entry, x, z)).reversed());
+        nearest(root, x, z, k, best);
+        List<Entry<T>> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingLong(entry -> distanceSquared(entry, x, z)));
+        return result;
+    }
+
+    private void nearest(Node<T> node, int x, int z, int k, PriorityQueue<Entry<T>> best) {
+        if (node == null)
+            return;
+        if (best.size() == k && node.distanceSquared(x, z) >= distanceSquared(best.peek(), x, z))
+            return;
+
+        if (!node.removed) {
+            best.add(node.entry);
+            if (best.size() > k) best.poll();
+        }
+        boolean leftFirst = node.goesLeft(x, z);
+        nearest(leftFirst ? node.left : node.right, x, z, k, best);
+        nearest(leftFirst ? node.right : node.left, x, z, k, best);
+    }
+
+    /**
+     * Finds all spawnpoints within a distance of a position, ignoring their
+     * radii.
+     *
+     * @param x      x coordinate
+     * @param z      z coordinate
+     * @param radius greatest distance, inclusive
+     * @return matching spawnpoints in no particular order
+     */
+    public List<Entry<T>> within(int x, int z, int radius) {
+        List<Entry<T>> entries = new ArrayList<>();
+        if (radius >= 0)
+            within(root, x, z, (long) radius * radius, entries);
+        return entries;
+    }
+
+    private void within(Node<T> node, int x, int z, long radiusSquared, List<Entry<T>> entries) {
+        if (node == null || node.distanceSquared(x, z) > radiusSquared)
+            return;
+        if (!node.removed && distanceSquared(node.entry, x, z) <= radiusSquared)
+            entries.add(node.entry);
+        within(node.left, x, z, radiusSquared, entries);
+        within(node.right, x, z, radiusSquared, entries);
+    }
+
+    private static long distanceSquared(Entry<?> entry, int x, int z) {
+        long dx = entry.x() - (long) x;
+        long dz = entry.z() - (long) z;
+        return dx * dx + dz * dz;
+    }
+
+    /**
+     * @return all spawnpoints in the tree
+     */
+    public List<Entry<T>> entries() {
+        List<Entry<T>> entries = new ArrayList<>(size);
+        collect(root, entries);
+        return entries;
+    }
+
+    private void collect(Node<T> node, List<Entry<T>> entries) {
+        if (node == null) return;
+        if (!node.removed) entries.add(node.entry);
+        collect(node.left, entries);
+        collect(node.right, entries);
+    }
+
+    private void rebuild(Collection<Entry<T>> additional) {
+        List<Entry<T>> entries = entries();
+        entries.addAll(additional);
+        @SuppressWarnings("unchecked")
+        Entry<T>[] array = entries.toArray(new Entry[0]);
+        root = build(array, 0, array.length, true);
+        size = array.length;
+        removed = 0;
+        insertedSinceBuild = 0;
+        sizeAtBuild = size;
+    }
+
+    private static final Comparator<Entry<?>> BY_X = Comparator.comparingInt(entry -> entry.x());
+    private static final Comparator<Entry<?>> BY_Z = Comparator.comparingInt(entry -> entry.z());
+
+    private Node<T> build(Entry<T>[] entries, int from, int to, boolean splitX) {
+        if (from >= to)
+            return null;
+
+        Arrays.sort(entries, from, to, splitX ? BY_X : BY_Z);
+        int median = (from + to) >>> 1;
+        // entries equal to the median on the split axis must go right
+        while (median > from && (splitX
+                ? entries[median - 1].x() == entries[median].x()
+                : entries[median - 1].z() == entries[median].z()))
+            median--;
+
+        Node<T> node = new Node<>(entries[median], splitX);
+        node.left = build(entries, from, median, !splitX);
+        node.right = build(entries, median + 1, to, !splitX);
+        for (int i = from; i < to; i++)
+            node.include(entries[i]);
+        return node;
+    }
+}
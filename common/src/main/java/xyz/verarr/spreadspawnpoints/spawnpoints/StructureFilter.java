@@ -0,0 +1,187 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+import net.minecraft.registry.Registry;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.structure.StructureSet;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.gen.chunk.placement.StructurePlacement;
+import net.minecraft.world.gen.chunk.placement.StructurePlacementCalculator;
+
+import java.util.*;
+
+/**
+ * Rejects spawnpoints near the possible starts of configured structure sets
+ * (e.g. <code>minecraft:villages</code>).
+ * <p>
+ * Structure starts are calculated from the structure placement rules and
+ * the world seed only, so no chunk is generated. Since biomes are not taken
+ * into account, this errs on the side of rejecting. Results are computed
+ * per region of 8×8 chunks and kept in an LRU cache, so repeated candidates
+ * in the same area are free. All methods are synchronized, as the cache is
+ * shared.
+ */
+public class StructureFilter {
+    private static final int DEFAULT_RADIUS = 2;
+    private static final int REGION_SHIFT = 3;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int CACHED_REGIONS = 4096;
+
+    private final ServerWorld world;
+
+    // settings
+    private final Set<Identifier> structureSets = new LinkedHashSet<>();
+    private int radius = DEFAULT_RADIUS;
+
+    // cache
+    private List<StructurePlacement> placements = null;
+    /**
+     * Region position to a bitmask of the chunks in the region that may hold
+     * a structure start, bit <code>z * 8 + x</code>.
+     */
+    private final Map<Long, Long> regionCache = new LinkedHashMap<>(CACHED_REGIONS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > CACHED_REGIONS;
+        }
+    };
+
+    public StructureFilter(ServerWorld world) {
+        this.world = world;
+    }
+
+    public synchronized boolean isEnabled() {
+        return !structureSets.isEmpty();
+    }
+
+    public synchronized Set<Identifier> getStructureSets() {
+        return Set.copyOf(structureSets);
+    }
+
+    /**
+     * @param structureSet identifier of the structure set to avoid
+     * @return true if the structure set was not avoided yet
+     * @throws IllegalArgumentException if the structure set does not exist
+     */
+    public synchronized boolean add(Identifier structureSet) throws IllegalArgumentException {
+        if (!getRegistry().containsId(structureSet))
+            throw new IllegalArgumentException("Unknown structure set " + structureSet);
+        boolean added = structureSets.add(structureSet);
+        invalidate();
+        return added;
+    }
+
+    /**
+     * @param structureSet identifier of the structure set to no longer avoid
+     * @return true if the structure set was avoided before
+     */
+    public synchronized boolean remove(Identifier structureSet) {
+        boolean removed = structureSets.remove(structureSet);
+        invalidate();
+        return removed;
+    }
+
+    public synchronized int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @param radius distance in chunks to keep from structure starts
+     */
+    public synchronized void setRadius(int radius) {
+        if (radius < 0) throw new IllegalArgumentException("radius must not be negative");
+        this.radius = radius;
+    }
+
+    private Registry<StructureSet> getRegistry() {
+        return world.getRegistryManager().get(RegistryKeys.STRUCTURE_SET);
+    }
+
+    private void invalidate() {
+        placements = null;
+        regionCache.clear();
+    }
+
+    /**
+     * Test if a spawnpoint lies within {@link #getRadius()} chunks of a
+     * possible start of an avoided structure.
+     *
+     * @param x block x coordinate
+     * @param z block z coordinate
+     * @return true if the spawnpoint is near a structure
+     */
+    public synchronized boolean isNearStructure(int x, int z) {
+        if (!isEnabled()) return false;
+
+        int centerX = x >> 4;
+        int centerZ = z >> 4;
+        for (int chunkZ = centerZ - radius; chunkZ <= centerZ + radius; chunkZ++) {
+            for (int chunkX = centerX - radius; chunkX <= centerX + radius; chunkX++) {
+                long mask = getRegionMask(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+                int bit = (chunkZ & (REGION_SIZE - 1)) * REGION_SIZE + (chunkX & (REGION_SIZE - 1));
+                if ((mask >>> bit & 1) != 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private long getRegionMask(int regionX, int regionZ) {
+        long key = (long) regionX << 32 | Integer.toUnsignedLong(regionZ);
+        Long mask = regionCache.get(key);
+        if (mask == null) {
+            mask = computeRegionMask(regionX, regionZ);
+            regionCache.put(key, mask);
+        }
+        return mask;
+    }
+
+    private long computeRegionMask(int regionX, int regionZ) {
+        if (placements == null) {
+            Registry<StructureSet> registry = getRegistry();
+            placements = structureSets.stream()
+                    .map(registry::get)
+                    .filter(Objects::nonNull)
+                    .map(StructureSet::placement)
+                    .toList();
+        }
+
+        StructurePlacementCalculator calculator = world.getChunkManager().getStructurePlacementCalculator();
+        long mask = 0;
+        for (int z = 0; z < REGION_SIZE; z++) {
+            for (int x = 0; x < REGION_SIZE; x++) {
+                int chunkX = (regionX << REGION_SHIFT) + x;
+                int chunkZ = (regionZ << REGION_SHIFT) + z;
+                for (StructurePlacement placement : placements) {
+                    if (placement.shouldGenerate(calculator, chunkX, chunkZ)) {
+                        mask |= 1L << (z * REGION_SIZE + x);
+                        break;
+                    }
+                }
+            }
+        }
+        return mask;
+    }
+
+    public synchronized NbtCompound writeNbt() {
+        NbtCompound nbt = new NbtCompound();
+        NbtList structureSetsNbt = new NbtList();
+        structureSets.forEach(structureSet -> structureSetsNbt.add(NbtString.of(structureSet.toString())));
+        nbt.put("structureSets", structureSetsNbt);
+        nbt.putInt("radius", radius);
+        return nbt;
+    }
+
+    public synchronized void modifyFromNbt(NbtCompound tag) {
+        structureSets.clear();
+        NbtList structureSetsNbt = tag.getList("structureSets", NbtElement.STRING_TYPE);
+        for (int i = 0; i < structureSetsNbt.size(); i++)
+            structureSets.add(new Identifier(structureSetsNbt.getString(i)));
+        radius = tag.contains("radius", NbtElement.INT_TYPE) ? tag.getInt("radius") : DEFAULT_RADIUS;
+        invalidate();
+    }
+}
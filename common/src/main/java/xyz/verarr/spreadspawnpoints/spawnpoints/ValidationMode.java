@@ -0,0 +1,54 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import net.minecraft.world.chunk.ChunkStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * How far the chunks of candidate spawnpoints are generated to check their
+ * terrain.
+ */
+public enum ValidationMode {
+    /**
+     * Generate chunks fully, like vanilla does. Exact, but every rejected
+     * candidate pays for features, lighting and entities.
+     */
+    FULL(ChunkStatus.FULL),
+    /**
+     * Check the terrain of proto-chunks right after surface generation,
+     * using the worldgen heightmaps. Only the accepted spawnpoint is
+     * generated fully and checked again, as features such as trees and
+     * lakes may still change its surface.
+     */
+    SURFACE(ChunkStatus.SURFACE);
+
+    private final ChunkStatus status;
+
+    ValidationMode(ChunkStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the chunk status candidates are checked at
+     */
+    public ChunkStatus getStatus() {
+        return status;
+    }
+
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param name name of the mode, as returned by {@link #getName()}
+     * @return the mode, or <code>null</code> if there is none by that name
+     */
+    public static @Nullable ValidationMode byName(String name) {
+        for (ValidationMode mode : values()) {
+            if (mode.getName().equals(name))
+                return mode;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,134 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints;
+
+import net.minecraft.entity.player.PlayerEntity;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2i;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An ordered set of checks a spawnpoint must pass to be accepted.
+ * <p>
+ * Every stage measures how long it takes per call and how often it rejects.
+ * Periodically the stages are reordered by expected cost per rejection
+ * (average cost divided by rejection rate), which minimizes the expected
+ * cost of evaluating a candidate as long as the checks are independent.
+ * Cheap, selective checks end up first, so expensive ones such as chunk
+ * checks run as rarely as possible.
+ */
+public class ValidationPipeline {
+    /**
+     * How many spawnpoints to test between reorderings.
+     */
+    private static final int REORDER_INTERVAL = 64;
+
+    @FunctionalInterface
+    public interface Check {
+        /**
+         * @param player     the player the spawnpoint is for, if any
+         * @param spawnPoint spawnpoint to test
+         * @return true if the spawnpoint passes this check
+         */
+        boolean test(@Nullable PlayerEntity player, Vector2i spawnPoint);
+    }
+
+    public static final class Stage {
+        private final String name;
+        private final Check check;
+        private long calls = 0;
+        private long rejections = 0;
+        private long nanos = 0;
+
+        private Stage(String name, Check check) {
+            this.name = name;
+            this.check = check;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getRejections() {
+            return rejections;
+        }
+
+        /**
+         * @return average time per call in nanoseconds, 0 if never called
+         */
+        public double getCostPerCall() {
+            return calls == 0 ? 0 : (double) nanos / calls;
+        }
+
+        /**
+         * @return fraction of calls that rejected the spawnpoint, smoothed
+         * so stages with few calls are not over- or underrated
+         */
+        public double getRejectionRate() {
+            return (rejections + 1.0) / (calls + 2.0);
+        }
+
+        private double getCostPerRejection() {
+            return getCostPerCall() / getRejectionRate();
+        }
+
+        private boolean test(@Nullable PlayerEntity player, Vector2i spawnPoint) {
+            long start = System.nanoTime();
+            boolean passed = check.test(player, spawnPoint);
+            nanos += System.nanoTime() - start;
+            calls++;
+            if (!passed) rejections++;
+            return passed;
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private int testsSinceReorder = 0;
+
+    /**
+     * Add a stage to the end of the pipeline.
+     *
+     * @param name  name of the stage, shown in statistics
+     * @param check the check to run
+     * @return the new stage
+     */
+    public Stage addStage(String name, Check check) {
+        Stage stage = new Stage(name, check);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * @return the stages in their current order
+     */
+    public List<Stage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Run a spawnpoint through all stages, stopping at the first rejection.
+     *
+     * @param player     the player the spawnpoint is for, if any
+     * @param spawnPoint spawnpoint to test
+     * @return the stage that rejected the spawnpoint, or <code>null</code> if
+     * it passed all stages
+     */
+    public @Nullable Stage test(@Nullable PlayerEntity player, Vector2i spawnPoint) {
+        if (++testsSinceReorder >= REORDER_INTERVAL) {
+            stages.sort(Comparator.comparingDouble(Stage::getCostPerRejection));
+            testsSinceReorder = 0;
+        }
+
+        for (Stage stage : stages) {
+            if (!stage.test(player, spawnPoint))
+                return stage;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,440 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints.generators;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.random.LocalRandom;
+import net.minecraft.util.math.random.Random;
+import org.joml.Vector2i;
+import xyz.verarr.spreadspawnpoints.SpreadSpawnPoints;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointTree;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+public class BlueNoiseSpawnPointGenerator implements SpawnPointGenerator {
+    private static final int DEFAULT_RADIUS = 256;
+    private static final int DEFAULT_TILE_SIZE = 4096;
+    /**
+     * Candidates tried around each point before it is considered full, as in
+     * Bridson's algorithm.
+     */
+    private static final int CANDIDATES_PER_POINT = 30;
+    /**
+     * Upper bound of <code>tileSize / radius</code>, which keeps the
+     * background grid of {@link #generateTile(long, int, int)} at a few
+     * megabytes.
+     */
+    private static final int MAX_RADII_PER_TILE = 1024;
+
+    /**
+     * Poisson-disk point set of one tile. Points are packed as
+     * <code>x &lt;&lt; 16 | z</code>, relative to the tile corner.
+     *
+     * @param points        points in the order they are handed out, closest
+     *                      to the tile center first
+     * @param sortedPoints  the same points sorted by their packed value, for
+     *                      lookups
+     */
+    private record Tile(int[] points, int[] sortedPoints) {}
+
+    // settings
+    private int radius = DEFAULT_RADIUS;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    public final Vector2i offset = new Vector2i(0);
+
+    // state
+    private long index = 0;
+    /**
+     * Position on the fallback lattice, used while the tile is not ready.
+     * Not saved, as occupied fallback points are skipped anyway.
+     */
+    private long fallbackIndex = 0;
+    /**
+     * Spawnpoints assigned to players, whose points are skipped. They are
+     * added again whenever the world is loaded, so they are not saved.
+     */
+    private final SpawnPointTree<Void> occupied = new SpawnPointTree<>();
+
+    private final long seed;
+    private final Path cacheDirectory;
+    /**
+     * The tile for the current settings, or <code>null</code> if it has not
+     * been requested since they were applied. Completes with
+     * <code>null</code> if it could not be loaded.
+     */
+    private CompletableFuture<Tile> tile = null;
+
+    public BlueNoiseSpawnPointGenerator(ServerWorld serverWorld) {
+        this.offset.set(
+                serverWorld.getSpawnPos().getX(),
+                serverWorld.getSpawnPos().getZ()
+        );
+        this.seed = serverWorld.getSeed();
+        this.cacheDirectory = serverWorld.getServer().getSavePath(WorldSavePath.ROOT)
+                .resolve("data").resolve(SpreadSpawnPoints.MOD_ID);
+    }
+
+    /**
+     * Gets the tile without waiting for it, starting to load it if needed.
+     *
+     * @return the tile, or <code>null</code> if it is not ready
+     */
+    private Tile readyTile() {
+        if (tile == null) tile = loadTile();
+        return tile.getNow(null);
+    }
+
+    /**
+     * Starts loading or generating the tile for the current settings in the
+     * background.
+     */
+    private CompletableFuture<Tile> loadTile() {
+        final int radius = this.radius;
+        final int tileSize = this.tileSize;
+        final long seed = this.seed;
+        final Path cacheFile = cacheDirectory.resolve("bluenoise_%d_%d_%d.bin".formatted(seed, radius, tileSize));
+        return CompletableFuture.supplyAsync(() -> {
+            int[] points = readCachedTile(cacheFile, tileSize);
+            if (points == null) {
+                points = generateTile(seed, radius, tileSize);
+                writeCachedTile(cacheFile, points);
+            }
+            int[] sortedPoints = points.clone();
+            Arrays.sort(sortedPoints);
+            return new Tile(points, sortedPoints);
+        }, Util.getMainWorkerExecutor()).exceptionally(e -> {
+            SpreadSpawnPoints.LOGGER.error("Failed to generate blue noise tile, using a square lattice instead", e);
+            return null;
+        });
+    }
+
+    /**
+     * Reads a tile written by {@link #writeCachedTile(Path, int[])}.
+     *
+     * @return the packed points, or <code>null</code> if the file is
+     * missing or corrupt, so the tile is generated instead
+     */
+    private static int[] readCachedTile(Path cacheFile, int tileSize) {
+        if (!Files.exists(cacheFile)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            long fileSize = Files.size(cacheFile);
+            int count = in.readInt();
+            if (count <= 0 || fileSize != 4 + 4L * count)
+                throw new IOException("Expected %d points, but the file has %d bytes".formatted(count, fileSize));
+            int[] points = new int[count];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = in.readInt();
+                if (points[i] >>> 16 >= tileSize || (points[i] & 0xFFFF) >= tileSize)
+                    throw new IOException("Point outside of the tile");
+            }
+            return points;
+        } catch (IOException | RuntimeException e) {
+            SpreadSpawnPoints.LOGGER.warn("Failed to read cached blue noise tile {}, regenerating", cacheFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a tile to a temporary file first and moves it into place, so
+     * an interrupted write never leaves a truncated cache file behind.
+     */
+    private static void writeCachedTile(Path cacheFile, int[] points) {
+        Path temporary = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(points.length);
+                for (int point : points)
+                    out.writeInt(point);
+            }
+            try {
+                Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            SpreadSpawnPoints.LOGGER.warn("Failed to cache blue noise tile {}", cacheFile, e);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static int pack(int x, int z) {
+        return x << 16 | z;
+    }
+
+    /**
+     * Generates a tileable Poisson-disk point set with Bridson's algorithm,
+     * measuring distances on a torus so the tile repeats seamlessly.
+     *
+     * @return packed points, closest to the tile center first
+     */
+    static int[] generateTile(long seed, int radius, int tileSize) {
+        if (tileSize > (long) radius * MAX_RADII_PER_TILE)
+            throw new IllegalArgumentException("tileSize must be at most %d times radius".formatted(MAX_RADII_PER_TILE));
+        Random random = new LocalRandom(seed);
+        // at most one point per cell
+        int cells = (int) Math.ceil(tileSize / (radius / Math.sqrt(2)));
+        double cellSize = (double) tileSize / cells;
+        int reach = (int) Math.ceil(radius / cellSize);
+        int[] grid = new int[cells * cells];
+        Arrays.fill(grid, -1);
+
+        IntArrayList xs = new IntArrayList();
+        IntArrayList zs = new IntArrayList();
+        IntArrayList active = new IntArrayList();
+
+        int firstX = random.nextInt(tileSize);
+        int firstZ = random.nextInt(tileSize);
+        grid[(int) (firstZ / cellSize) * cells + (int) (firstX / cellSize)] = 0;
+        xs.add(firstX);
+        zs.add(firstZ);
+        active.add(0);
+
+        long radiusSquared = (long) radius * radius;
+        while (!active.isEmpty()) {
+            int activeIndex = random.nextInt(active.size());
+            int point = active.getInt(activeIndex);
+            boolean found = false;
+            for (int attempt = 0; attempt < CANDIDATES_PER_POINT && !found; attempt++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = radius * (1 + random.nextDouble());
+                int x = Math.floorMod((int) (xs.getInt(point) + Math.cos(angle) * distance), tileSize);
+                int z = Math.floorMod((int) (zs.getInt(point) + Math.sin(angle) * distance), tileSize);
+                int cellX = (int) (x / cellSize);
+                int cellZ = (int) (z / cellSize);
+
+                boolean conflicts = false;
+                for (int dz = -reach; dz <= reach && !conflicts; dz++) {
+                    for (int dx = -reach; dx <= reach && !conflicts; dx++) {
+                        int other = grid[Math.floorMod(cellZ + dz, cells) * cells + Math.floorMod(cellX + dx, cells)];
+                        if (other == -1) continue;
+                        int distanceX = Math.abs(xs.getInt(other) - x);
+                        int distanceZ = Math.abs(zs.getInt(other) - z);
+                        distanceX = Math.min(distanceX, tileSize - distanceX);
+                        distanceZ = Math.min(distanceZ, tileSize - distanceZ);
+                        conflicts = (long) distanceX * distanceX + (long) distanceZ * distanceZ < radiusSquared;
+                    }
+                }
+                if (conflicts) continue;
+
+                grid[cellZ * cells + cellX] = xs.size();
+                active.add(xs.size());
+                xs.add(x);
+                zs.add(z);
+                found = true;
+            }
+            if (!found) {
+                active.set(activeIndex, active.getInt(active.size() - 1));
+                active.removeInt(active.size() - 1);
+            }
+        }
+
+        // order by distance from the tile center, keeping the packed point in the low bits
+        int center = tileSize / 2;
+        long[] keyed = new long[xs.size()];
+        for (int i = 0; i < keyed.length; i++) {
+            long distanceX = xs.getInt(i) - center;
+            long distanceZ = zs.getInt(i) - center;
+            keyed[i] = (distanceX * distanceX + distanceZ * distanceZ) << 32
+                    | Integer.toUnsignedLong(pack(xs.getInt(i), zs.getInt(i)));
+        }
+        Arrays.sort(keyed);
+        int[] points = new int[keyed.length];
+        for (int i = 0; i < keyed.length; i++)
+            points[i] = (int) keyed[i];
+        return points;
+    }
+
+    private Vector2i pointToWorld(long index, Tile tile) {
+        int point = tile.points()[(int) (index % tile.points().length)];
+        Vector2i tileCoordinates = GridSpawnPointGenerator.spiralCoordinates(index / tile.points().length);
+        return tileCoordinates.mul(tileSize)
+                .add(point >>> 16, point & 0xFFFF)
+                .sub(tileSize / 2, tileSize / 2)
+                .add(offset);
+    }
+
+    /**
+     * Points of the square lattice with a spacing of {@link #radius} around
+     * {@link #offset}, in spiral order.
+     */
+    private Vector2i fallbackToWorld(long index) {
+        return GridSpawnPointGenerator.spiralCoordinates(index).mul(radius).add(offset);
+    }
+
+    private boolean isOnFallbackLattice(Vector2i spawnPoint) {
+        return (spawnPoint.x - offset.x) % radius == 0 && (spawnPoint.y - offset.y) % radius == 0;
+    }
+
+    /**
+     * A point is occupied by any spawnpoint closer to it than the radius, so
+     * spawnpoints of other generators and of the fallback lattice are kept
+     * apart too. Points of the tile are a radius apart, so each spawnpoint
+     * of the tile only occupies its own point.
+     */
+    private boolean isOccupied(Vector2i spawnPoint) {
+        return occupied.anyConflict(spawnPoint.x, spawnPoint.y, radius);
+    }
+
+    /**
+     * Generate a new spawnpoint and return it, skipping occupied points.
+     * <p>
+     * While the tile is still being generated, points of a square lattice
+     * are handed out instead, so players never wait for it.
+     *
+     * @return the generated spawnpoint coordinates.
+     */
+    @Override
+    public Vector2i next() {
+        Tile tile = readyTile();
+        if (tile == null) {
+            while (isOccupied(fallbackToWorld(fallbackIndex))) fallbackIndex++;
+            return fallbackToWorld(fallbackIndex++);
+        }
+        while (isOccupied(pointToWorld(index, tile))) index++;
+        return pointToWorld(index++, tile);
+    }
+
+    /**
+     * Test if a spawnpoint is valid, as in it may be generated by this generator.
+     *
+     * @param spawnPoint spawnpoint to test
+     * @return true if the spawnpoint may be generated by this generator, false otherwise.
+     */
+    @Override
+    public boolean isValid(Vector2i spawnPoint) {
+        Tile tile = readyTile();
+        if (tile == null)
+            return isOnFallbackLattice(spawnPoint) && !isOccupied(spawnPoint);
+        int x = Math.floorMod(spawnPoint.x - offset.x + tileSize / 2, tileSize);
+        int z = Math.floorMod(spawnPoint.y - offset.y + tileSize / 2, tileSize);
+        return Arrays.binarySearch(tile.sortedPoints(), pack(x, z)) >= 0 && !isOccupied(spawnPoint);
+    }
+
+    @Override
+    public List<Vector2i> peek(int count) {
+        Tile tile = readyTile();
+        List<Vector2i> upcoming = new ArrayList<>(count);
+        for (long i = tile == null ? fallbackIndex : index; upcoming.size() < count; i++) {
+            Vector2i spawnPoint = tile == null ? fallbackToWorld(i) : pointToWorld(i, tile);
+            if (!isOccupied(spawnPoint))
+                upcoming.add(spawnPoint);
+        }
+        return upcoming;
+    }
+
+    /**
+     * This method is ignored.
+     */
+    @Override
+    public void reject(Vector2i spawnPoint) {}
+
+    /**
+     * Marks the point of the spawnpoint as occupied, so it is not generated
+     * again.
+     */
+    @Override
+    public void add(Vector2i spawnPoint) {
+        occupied.add(spawnPoint.x, spawnPoint.y, 0, null);
+    }
+
+    @Override
+    public void remove(Vector2i spawnPoint) {
+        occupied.remove(spawnPoint.x, spawnPoint.y, null);
+    }
+
+    @Override
+    public void addAll(Map<UUID, Vector2i> spawnPoints) {
+        occupied.addAll(spawnPoints.values().stream()
+                .map(spawnPoint -> new SpawnPointTree.Entry<Void>(spawnPoint.x, spawnPoint.y, 0, null))
+                .toList());
+    }
+
+    /**
+     * Restarts at the center of the first tile. All points are free again.
+     */
+    @Override
+    public void clear() {
+        index = 0;
+        fallbackIndex = 0;
+        occupied.clear();
+    }
+
+    // NBTSerializable stuff
+    @Override
+    public NbtCompound writeNbt() {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt("radius", radius);
+        nbt.putInt("tileSize", tileSize);
+        nbt.putInt("offsetX", offset.x);
+        nbt.putInt("offsetZ", offset.y);
+
+        NbtCompound state = new NbtCompound();
+        state.putLong("index", index);
+        nbt.put("state", state);
+
+        return nbt;
+    }
+
+    @Override
+    public void modifyFromNbt(NbtCompound tag) {
+        int oldRadius = radius;
+        int oldTileSize = tileSize;
+
+        radius = tag.getInt("radius");
+        tileSize = tag.getInt("tileSize");
+        offset.x = tag.getInt("offsetX");
+        offset.y = tag.getInt("offsetZ");
+
+        index = tag.getCompound("state").getLong("index");
+
+        if (tile == null || radius != oldRadius || tileSize != oldTileSize)
+            tile = loadTile();
+    }
+
+    @Override
+    public void modifyFromNbtPartial(NbtCompound tag) throws IllegalArgumentException {
+        Set<String> differenceSet = new HashSet<>(tag.getKeys());
+        differenceSet.removeAll(Set.of("radius", "tileSize", "offsetX", "offsetZ", "index"));
+        if (!differenceSet.isEmpty())
+            throw new IllegalArgumentException("Invalid tag keys: " + differenceSet.stream().reduce((a, b) -> a + ", " + b).orElse("(none)"));
+
+        if (tag.contains("radius") && tag.getType("radius") != 3) throw new IllegalArgumentException("radius must be an integer");
+        if (tag.contains("tileSize") && tag.getType("tileSize") != 3) throw new IllegalArgumentException("tileSize must be an integer");
+        if (tag.contains("offsetX") && tag.getType("offsetX") != 3) throw new IllegalArgumentException("offsetX must be an integer");
+        if (tag.contains("offsetZ") && tag.getType("offsetZ") != 3) throw new IllegalArgumentException("offsetZ must be an integer");
+        if (tag.contains("index") && tag.getType("index") != 4) throw new IllegalArgumentException("index must be a long");
+
+        int newRadius = tag.contains("radius", 3) ? tag.getInt("radius") : radius;
+        int newTileSize = tag.contains("tileSize", 3) ? tag.getInt("tileSize") : tileSize;
+        if (newRadius <= 0) throw new IllegalArgumentException("radius must be positive");
+        if (newTileSize <= newRadius || newTileSize > 1 << 15) throw new IllegalArgumentException("tileSize must be larger than radius and at most 32768");
+        if (newTileSize > (long) newRadius * MAX_RADII_PER_TILE) throw new IllegalArgumentException("tileSize must be at most %d times radius".formatted(MAX_RADII_PER_TILE));
+
+        if (tag.contains("offsetX", 3))
+            offset.x = tag.getInt("offsetX");
+        if (tag.contains("offsetZ", 3))
+            offset.y = tag.getInt("offsetZ");
+
+        if (tag.contains("index", 4))
+            index = tag.getLong("index");
+
+        if (newRadius != radius || newTileSize != tileSize) {
+            radius = newRadius;
+            tileSize = newTileSize;
+            tile = loadTile();
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints.generators;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.scoreboard.AbstractTeam;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.border.WorldBorder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2i;
+import xyz.verarr.spreadspawnpoints.spawnpoints.PlayerSpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.spawnpoints.RejectionReason;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointRandom;
+
+import java.util.*;
+
+/**
+ * Spawns members of a team near each other, while keeping teams apart.
+ * <p>
+ * The first member of a team places the team's anchor, at least
+ * <code>anchorSeparation</code> blocks away from other anchors. Later
+ * members spawn within <code>memberRadius</code> blocks of their anchor, at
+ * least <code>memberSpacing</code> blocks away from each other.
+ * <p>
+ * If the cluster is full or surrounded by unsuitable terrain, the radius is
+ * doubled every {@link #MEMBER_ATTEMPTS} rejected candidates, up to half
+ * the anchor separation. If that does not help either, the player starts a
+ * new cluster for the team, which later members join instead.
+ */
+public class ClusterSpawnPointGenerator implements PlayerSpawnPointGenerator {
+    private static final int DEFAULT_ANCHOR_SEPARATION = 1024;
+    private static final int DEFAULT_MEMBER_RADIUS = 32;
+    private static final int DEFAULT_MEMBER_SPACING = 4;
+    /**
+     * Rejected candidates after which a search widens.
+     */
+    private static final int MEMBER_ATTEMPTS = 64;
+    /**
+     * How often the member radius may be doubled before a new cluster is
+     * started.
+     */
+    private static final int MAX_DOUBLINGS = 4;
+
+    /**
+     * Resolves which team a player belongs to.
+     */
+    @FunctionalInterface
+    public interface TeamResolver {
+        /**
+         * @param player the player to resolve the team of
+         * @return name of the player's team, or <code>null</code> if the
+         * player has no team
+         */
+        @Nullable String resolve(PlayerEntity player);
+    }
+
+    /**
+     * Resolves teams from the scoreboard.
+     */
+    public static final TeamResolver SCOREBOARD_TEAMS = player -> {
+        AbstractTeam team = player.getScoreboardTeam();
+        return team == null ? null : team.getName();
+    };
+
+    private static TeamResolver teamResolver = SCOREBOARD_TEAMS;
+
+    /**
+     * Replace the way players are grouped into teams. Defaults to
+     * {@link #SCOREBOARD_TEAMS}.
+     *
+     * @param resolver the new team resolver
+     */
+    public static void setTeamResolver(@NotNull TeamResolver resolver) {
+        teamResolver = resolver;
+    }
+
+    private static String teamKey(PlayerEntity player) {
+        String team = teamResolver.resolve(player);
+        return team != null ? "team:" + team : playerKey(player.getUuid());
+    }
+
+    private static String playerKey(UUID player) {
+        return "player:" + player;
+    }
+
+    private static String pointKey(Vector2i spawnPoint) {
+        return "point:" + spawnPoint.x + "," + spawnPoint.y;
+    }
+
+    private static String overflowKey(String team, UUID player) {
+        return team + "#" + player;
+    }
+
+    /**
+     * A search for a player's spawnpoint. The player only joins the cluster
+     * once the spawnpoint is added.
+     */
+    private static final class Search {
+        private final UUID player;
+        private final String team;
+        private String cluster;
+        private int rejections = 0;
+
+        private Search(UUID player, String team, String cluster) {
+            this.player = player;
+            this.team = team;
+            this.cluster = cluster;
+        }
+    }
+
+    // settings
+    private final Vector2i worldSpawn;
+    private final Vector2i lowerBounds;
+    private final Vector2i upperBounds;
+    private int anchorSeparation = DEFAULT_ANCHOR_SEPARATION;
+    private int memberRadius = DEFAULT_MEMBER_RADIUS;
+    private int memberSpacing = DEFAULT_MEMBER_SPACING;
+
+    // state
+    private final SpawnPointRandom random;
+    private final Map<String, Vector2i> anchors = new HashMap<>();
+    /**
+     * Cluster each player belongs to, which is the key of their team unless
+     * the team has overflowed into more clusters.
+     */
+    private final Map<UUID, String> memberTeams = new HashMap<>();
+    /**
+     * Cluster new members of a team join, if it is not the team's first.
+     */
+    private final Map<String, String> activeClusters = new HashMap<>();
+    private @Nullable Search search = null;
+    /**
+     * Coarse index of anchors, with cells of <code>anchorSeparation</code>.
+     */
+    private final Map<Vector2i, Set<String>> anchorGrid = new HashMap<>();
+    /**
+     * Fine index of members per team, with cells of
+     * <code>memberSpacing</code>.
+     */
+    private final Map<String, Map<Vector2i, Set<Vector2i>>> clusters = new HashMap<>();
+    private int greatestDistanceFromWorldspawn = 0;
+
+    public ClusterSpawnPointGenerator(ServerWorld serverWorld) {
+        WorldBorder border = serverWorld.getWorldBorder();
+        this.lowerBounds = new Vector2i((int) border.getBoundWest(), (int) border.getBoundNorth());
+        this.upperBounds = new Vector2i((int) border.getBoundEast(), (int) border.getBoundSouth());
+        this.random = new SpawnPointRandom(serverWorld.getSeed());
+
+        BlockPos worldSpawn = serverWorld.getSpawnPos();
+        this.worldSpawn = new Vector2i(
+                worldSpawn.getX(), worldSpawn.getZ()
+        );
+    }
+
+    private static Vector2i cell(Vector2i worldCoordinates, int cellSize) {
+        return new Vector2i(Math.floorDiv(worldCoordinates.x, cellSize),
+                Math.floorDiv(worldCoordinates.y, cellSize));
+    }
+
+    private boolean inBounds(Vector2i spawnPoint) {
+        return lowerBounds.x <= spawnPoint.x &&
+                upperBounds.x >= spawnPoint.x &&
+                lowerBounds.y <= spawnPoint.y &&
+                upperBounds.y >= spawnPoint.y;
+    }
+
+    /**
+     * Generate a new team anchor candidate around the already placed
+     * anchors.
+     *
+     * @return the generated spawnpoint coordinates.
+     */
+    @Override
+    public Vector2i next() {
+        return nextAnchor(0);
+    }
+
+    /**
+     * @param rejections rejected candidates so far, each
+     *                   {@link #MEMBER_ATTEMPTS} of which widen the area by
+     *                   the anchor separation, up to {@link #MAX_DOUBLINGS}
+     *                   times
+     */
+    private Vector2i nextAnchor(int rejections) {
+        int extent = greatestDistanceFromWorldspawn + anchorSeparation * (1 + Math.min(rejections / MEMBER_ATTEMPTS, MAX_DOUBLINGS));
+        SpawnPointRandom.Sample sample = random.next();
+        return new Vector2i(
+                sample.nextBetween(
+                        MathHelper.clamp(worldSpawn.x - extent, lowerBounds.x, upperBounds.x),
+                        MathHelper.clamp(worldSpawn.x + extent, lowerBounds.x, upperBounds.x)),
+                sample.nextBetween(
+                        MathHelper.clamp(worldSpawn.y - extent, lowerBounds.y, upperBounds.y),
+                        MathHelper.clamp(worldSpawn.y + extent, lowerBounds.y, upperBounds.y))
+        );
+    }
+
+    /**
+     * Generate a new spawnpoint for a player. Places the anchor if the
+     * player's team has none yet, otherwise picks a point around it.
+     *
+     * @param player the player the spawnpoint is for
+     * @return the generated spawnpoint coordinates.
+     */
+    @Override
+    public Vector2i next(PlayerEntity player) {
+        Search search = search(player);
+        Vector2i anchor = anchors.get(search.cluster);
+        if (anchor == null)
+            return nextAnchor(search.rejections);
+
+        SpawnPointRandom.Sample sample = random.next();
+        double angle = sample.nextDouble() * 2 * Math.PI;
+        double distance = searchRadius(search) * Math.sqrt(sample.nextDouble());
+        return new Vector2i(
+                anchor.x + (int) Math.round(Math.cos(angle) * distance),
+                anchor.y + (int) Math.round(Math.sin(angle) * distance)
+        );
+    }
+
+    /**
+     * Test if a spawnpoint is valid as a new team anchor.
+     *
+     * @param spawnPoint spawnpoint to test
+     * @return true if the spawnpoint may be generated by this generator, false otherwise.
+     */
+    @Override
+    public boolean isValid(Vector2i spawnPoint) {
+        if (!inBounds(spawnPoint))
+            return false;
+
+        Vector2i center = cell(spawnPoint, anchorSeparation);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                Set<String> teams = anchorGrid.get(new Vector2i(center.x + dx, center.y + dy));
+                if (teams == null) continue;
+                for (String team : teams) {
+                    if (anchors.get(team).distance(spawnPoint) < anchorSeparation)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Test if a spawnpoint is valid for a player. Only the player's own
+     * cluster is consulted once the team has an anchor.
+     *
+     * @param player     the player the spawnpoint is for
+     * @param spawnPoint spawnpoint to test
+     * @return true if the spawnpoint may be generated by this generator, false otherwise.
+     */
+    @Override
+    public boolean isValid(PlayerEntity player, Vector2i spawnPoint) {
+        Search search = search(player);
+        Vector2i anchor = anchors.get(search.cluster);
+        if (anchor == null)
+            return isValid(spawnPoint);
+
+        if (!inBounds(spawnPoint) || anchor.distance(spawnPoint) > searchRadius(search))
+            return false;
+
+        Map<Vector2i, Set<Vector2i>> cluster = clusters.getOrDefault(search.cluster, Map.of());
+        Vector2i center = cell(spawnPoint, memberSpacing);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                Set<Vector2i> members = cluster.get(new Vector2i(center.x + dx, center.y + dy));
+                if (members == null) continue;
+                for (Vector2i member : members) {
+                    if (member.distance(spawnPoint) < memberSpacing)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the search in progress for a player, or starts a new one if it
+     * was for someone else.
+     */
+    private Search search(PlayerEntity player) {
+        String team = teamKey(player);
+        if (search == null || !search.player.equals(player.getUuid()) || !search.team.equals(team))
+            search = new Search(player.getUuid(), team, activeClusters.getOrDefault(team, team));
+        return search;
+    }
+
+    private int searchRadius(Search search) {
+        int doublings = Math.min(search.rejections / MEMBER_ATTEMPTS, MAX_DOUBLINGS);
+        return Math.min(memberRadius << doublings, Math.max(memberRadius, anchorSeparation / 2));
+    }
+
+    /**
+     * This generator cannot predict its output.
+     */
+    @Override
+    public List<Vector2i> peek(int count) {
+        return List.of();
+    }
+
+    /**
+     * This method is ignored, see {@link #reject(Vector2i, RejectionReason)}.
+     */
+    @Override
+    public void reject(Vector2i spawnPoint) {}
+
+    /**
+     * Counts the rejection towards the search in progress, whatever the
+     * reason. Once the widest radius has been tried, the player starts a new
+     * cluster for the team.
+     *
+     * @param spawnPoint spawnpoint that was rejected
+     * @param reason     why it was rejected
+     */
+    @Override
+    public void reject(Vector2i spawnPoint, RejectionReason reason) {
+        if (search == null) return;
+        search.rejections++;
+        if (anchors.containsKey(search.cluster) && search.rejections >= MEMBER_ATTEMPTS * (MAX_DOUBLINGS + 1)) {
+            search.cluster = overflowKey(search.team, search.player);
+            search.rejections = 0;
+        }
+    }
+
+    private void addAnchor(String team, Vector2i anchor) {
+        anchors.put(team, anchor);
+        anchorGrid.computeIfAbsent(cell(anchor, anchorSeparation), c -> new HashSet<>()).add(team);
+        if ((int) anchor.distance(worldSpawn) > greatestDistanceFromWorldspawn)
+            greatestDistanceFromWorldspawn = (int) anchor.distance(worldSpawn);
+    }
+
+    private void removeAnchor(String team) {
+        Vector2i anchor = anchors.remove(team);
+        if (anchor == null) return;
+        activeClusters.values().remove(team);
+        Vector2i anchorCell = cell(anchor, anchorSeparation);
+        Set<String> teams = anchorGrid.get(anchorCell);
+        teams.remove(team);
+        if (teams.isEmpty())
+            anchorGrid.remove(anchorCell);
+    }
+
+    private void addMember(String team, Vector2i spawnPoint) {
+        if (!anchors.containsKey(team))
+            addAnchor(team, spawnPoint);
+        clusters.computeIfAbsent(team, t -> new HashMap<>())
+                .computeIfAbsent(cell(spawnPoint, memberSpacing), c -> new HashSet<>())
+                .add(spawnPoint);
+    }
+
+    private boolean removeMember(String team, Vector2i spawnPoint) {
+        Map<Vector2i, Set<Vector2i>> cluster = clusters.get(team);
+        if (cluster == null) return false;
+        Vector2i memberCell = cell(spawnPoint, memberSpacing);
+        Set<Vector2i> members = cluster.get(memberCell);
+        if (members == null || !members.remove(spawnPoint)) return false;
+        if (members.isEmpty())
+            cluster.remove(memberCell);
+        if (cluster.isEmpty()) {
+            clusters.remove(team);
+            removeAnchor(team);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a spawnpoint without a player, which is treated as a team of its
+     * own.
+     *
+     * @param spawnPoint spawnpoint to add
+     */
+    @Override
+    public void add(Vector2i spawnPoint) {
+        addMember(pointKey(spawnPoint), spawnPoint);
+    }
+
+    /**
+     * Adds a player's spawnpoint to the cluster the player's search was for,
+     * or to the cluster the player belonged to before.
+     *
+     * @param player     UUID of the player owning the spawnpoint
+     * @param spawnPoint spawnpoint to add
+     */
+    @Override
+    public void add(UUID player, Vector2i spawnPoint) {
+        String cluster;
+        if (search != null && search.player.equals(player)) {
+            cluster = search.cluster;
+            if (!cluster.equals(activeClusters.getOrDefault(search.team, search.team)))
+                activeClusters.put(search.team, cluster);
+            search = null;
+        } else {
+            cluster = memberTeams.getOrDefault(player, playerKey(player));
+        }
+        memberTeams.put(player, cluster);
+        addMember(cluster, spawnPoint);
+    }
+
+    /**
+     * Removes a spawnpoint from whichever cluster around it contains it.
+     *
+     * @param spawnPoint spawnpoint to remove
+     */
+    @Override
+    public void remove(Vector2i spawnPoint) {
+        Vector2i center = cell(spawnPoint, anchorSeparation);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                Set<String> teams = anchorGrid.get(new Vector2i(center.x + dx, center.y + dy));
+                if (teams == null) continue;
+                for (String team : List.copyOf(teams)) {
+                    if (removeMember(team, spawnPoint))
+                        return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void remove(UUID player, Vector2i spawnPoint) {
+        String team = memberTeams.remove(player);
+        if (team == null || !removeMember(team, spawnPoint))
+            remove(spawnPoint);
+    }
+
+    @Override
+    public void clear() {
+        anchors.clear();
+        anchorGrid.clear();
+        clusters.clear();
+        memberTeams.clear();
+        activeClusters.clear();
+        search = null;
+        greatestDistanceFromWorldspawn = 0;
+    }
+
+    /**
+     * Rebuilds both index levels, after their cell sizes changed.
+     */
+    private void rebuildIndex() {
+        Map<String, Vector2i> oldAnchors = new HashMap<>(anchors);
+        List<Map.Entry<String, Vector2i>> members = new ArrayList<>();
+        clusters.forEach((team, cluster) -> cluster.values().forEach(cellMembers ->
+                cellMembers.forEach(member -> members.add(Map.entry(team, member)))));
+
+        anchors.clear();
+        anchorGrid.clear();
+        clusters.clear();
+        oldAnchors.forEach(this::addAnchor);
+        members.forEach(member -> addMember(member.getKey(), member.getValue()));
+    }
+
+    // NBTSerializable stuff
+    @Override
+    public NbtCompound writeNbt() {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt("lowerX", lowerBounds.x);
+        nbt.putInt("upperX", upperBounds.x);
+        nbt.putInt("lowerZ", lowerBounds.y);
+        nbt.putInt("upperZ", upperBounds.y);
+
+        nbt.putLong("seed", random.getSeed());
+        nbt.putLong("counter", random.getCounter());
+
+        nbt.putInt("anchorSeparation", anchorSeparation);
+        nbt.putInt("memberRadius", memberRadius);
+        nbt.putInt("memberSpacing", memberSpacing);
+
+        nbt.putInt("worldspawnX", worldSpawn.x);
+        nbt.putInt("worldspawnZ", worldSpawn.y);
+
+        NbtCompound anchorsNbt = new NbtCompound();
+        anchors.forEach((team, anchor) -> anchorsNbt.putIntArray(team, new int[]{anchor.x, anchor.y}));
+        nbt.put("anchors", anchorsNbt);
+
+        NbtCompound memberTeamsNbt = new NbtCompound();
+        memberTeams.forEach((uuid, team) -> memberTeamsNbt.putString(uuid.toString(), team));
+        nbt.put("memberTeams", memberTeamsNbt);
+
+        NbtCompound activeClustersNbt = new NbtCompound();
+        activeClusters.forEach(activeClustersNbt::putString);
+        nbt.put("activeClusters", activeClustersNbt);
+
+        return nbt;
+    }
+
+    @Override
+    public void modifyFromNbt(NbtCompound tag) {
+        lowerBounds.x = tag.getInt("lowerX");
+        lowerBounds.y = tag.getInt("lowerZ");
+        upperBounds.x = tag.getInt("upperX");
+        upperBounds.y = tag.getInt("upperZ");
+
+        random.setSeed(tag.getLong("seed"));
+        random.setCounter(tag.getLong("counter"));
+
+        anchorSeparation = tag.getInt("anchorSeparation");
+        memberRadius = tag.getInt("memberRadius");
+        memberSpacing = tag.getInt("memberSpacing");
+
+        worldSpawn.x = tag.getInt("worldspawnX");
+        worldSpawn.y = tag.getInt("worldspawnZ");
+
+        NbtCompound anchorsNbt = tag.getCompound("anchors");
+        anchorsNbt.getKeys().forEach(team -> {
+            int[] anchor = anchorsNbt.getIntArray(team);
+            addAnchor(team, new Vector2i(anchor[0], anchor[1]));
+        });
+
+        NbtCompound memberTeamsNbt = tag.getCompound("memberTeams");
+        memberTeamsNbt.getKeys().forEach(uuid ->
+                memberTeams.put(UUID.fromString(uuid), memberTeamsNbt.getString(uuid)));
+
+        NbtCompound activeClustersNbt = tag.getCompound("activeClusters");
+        activeClustersNbt.getKeys().forEach(team ->
+                activeClusters.put(team, activeClustersNbt.getString(team)));
+    }
+
+    @Override
+    public void modifyFromNbtPartial(NbtCompound tag) throws IllegalArgumentException {
+        Set<String> differenceSet = new HashSet<>(tag.getKeys());
+        differenceSet.removeAll(Set.of("lowerX", "lowerZ", "upperX", "upperZ", "seed", "counter", "anchorSeparation", "memberRadius", "memberSpacing", "worldspawnX", "worldspawnZ"));
+        if (!differenceSet.isEmpty())
+            throw new IllegalArgumentException("Invalid tag keys: " + differenceSet.stream().reduce((a, b) -> a + ", " + b).orElse("(none)"));
+
+        if (tag.contains("lowerX") && tag.getType("lowerX") != 3) throw new IllegalArgumentException("lowerX must be an integer");
+        if (tag.contains("lowerZ") && tag.getType("lowerZ") != 3) throw new IllegalArgumentException("lowerZ must be an integer");
+        if (tag.contains("upperX") && tag.getType("upperX") != 3) throw new IllegalArgumentException("upperX must be an integer");
+        if (tag.contains("upperZ") && tag.getType("upperZ") != 3) throw new IllegalArgumentException("upperZ must be an integer");
+        if (tag.contains("seed") && tag.getType("seed") != 4) throw new IllegalArgumentException("seed must be a long");
+        if (tag.contains("counter") && tag.getType("counter") != 4) throw new IllegalArgumentException("counter must be a long");
+        if (tag.contains("anchorSeparation") && tag.getType("anchorSeparation") != 3) throw new IllegalArgumentException("anchorSeparation must be an integer");
+        if (tag.contains("memberRadius") && tag.getType("memberRadius") != 3) throw new IllegalArgumentException("memberRadius must be an integer");
+        if (tag.contains("memberSpacing") && tag.getType("memberSpacing") != 3) throw new IllegalArgumentException("memberSpacing must be an integer");
+        if (tag.contains("worldspawnX") && tag.getType("worldspawnX") != 3) throw new IllegalArgumentException("worldspawnX must be an integer");
+        if (tag.contains("worldspawnZ") && tag.getType("worldspawnZ") != 3) throw new IllegalArgumentException("worldspawnZ must be an integer");
+        if (tag.contains("anchorSeparation", 3) && tag.getInt("anchorSeparation") <= 0) throw new IllegalArgumentException("anchorSeparation must be positive");
+        if (tag.contains("memberSpacing", 3) && tag.getInt("memberSpacing") <= 0) throw new IllegalArgumentException("memberSpacing must be positive");
+
+        if (tag.contains("lowerX", 3))
+            lowerBounds.x = tag.getInt("lowerX");
+        if (tag.contains("lowerZ", 3))
+            lowerBounds.y = tag.getInt("lowerZ");
+        if (tag.contains("upperX", 3))
+            upperBounds.x = tag.getInt("upperX");
+        if (tag.contains("upperZ", 3))
+            upperBounds.y = tag.getInt("upperZ");
+
+        if (tag.contains("seed", 4))
+            random.setSeed(tag.getLong("seed"));
+        if (tag.contains("counter", 4))
+            random.setCounter(tag.getLong("counter"));
+
+        if (tag.contains("anchorSeparation", 3))
+            anchorSeparation = tag.getInt("anchorSeparation");
+        if (tag.contains("memberRadius", 3))
+            memberRadius = tag.getInt("memberRadius");
+        if (tag.contains("memberSpacing", 3))
+            memberSpacing = tag.getInt("memberSpacing");
+
+        if (tag.contains("worldspawnX", 3))
+            worldSpawn.x = tag.getInt("worldspawnX");
+        if (tag.contains("worldspawnZ", 3))
+            worldSpawn.y = tag.getInt("worldspawnZ");
+
+        if (tag.contains("anchorSeparation", 3) || tag.contains("memberSpacing", 3))
+            rebuildIndex();
+    }
+}
@@ -5,19 +5,33 @@ import net.minecraft.server.world.ServerWorld;
 import org.jetbrains.annotations.Contract;
 import org.joml.Vector2i;
 import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointTree;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 public class GridSpawnPointGenerator implements SpawnPointGenerator {
     public final Vector2i gridSize = new Vector2i(16);
     public final Vector2i offset = new Vector2i(0);
 
-    private int currentX = 0;
-    private int currentY = 0;
-    private int direction = 0; // 0: right, 1: down, 2: left, 3: up
-    private int stepsInCurrentDirection = 0;
-    private int stepsInCurrentLayer = 1;
+    private long index = 0;
+    /**
+     * Spiral indices of cells that have been rejected before, skipped when
+     * the spiral is walked again after {@link #clear()} or after moving
+     * {@link #index} back. Only indices up to {@link Integer#MAX_VALUE} are
+     * remembered.
+     */
+    private BitSet invalidCells = new BitSet();
+    /**
+     * Spawnpoints assigned to players, whose cells are skipped. They are
+     * added again whenever the world is loaded, so they are not saved.
+     */
+    private final SpawnPointTree<Void> occupied = new SpawnPointTree<>();
 
     public GridSpawnPointGenerator(ServerWorld serverWorld) {
         this.offset.set(
@@ -33,44 +47,85 @@ public class GridSpawnPointGenerator implements SpawnPointGenerator {
      */
     @Override
     public Vector2i next() {
-        Vector2i vector = new Vector2i(currentX, currentY)
-                .mul(gridSize)
-                .add(offset);
-        moveToNext();
-        return vector;
+        skipInvalid();
+        return cellToWorld(spiralCoordinates(index++));
     }
 
     /**
-     * Spiral pattern algorithm
+     * Advances past all cells that are known to be invalid or occupied.
      */
     @Contract(mutates = "this")
-    private void moveToNext() {
-        switch (direction) {
-            case 0: // Move right
-                currentX++;
-                break;
-            case 1: // Move down
-                currentY++;
-                break;
-            case 2: // Move left
-                currentX--;
-                break;
-            case 3: // Move up
-                currentY--;
-                break;
-        }
+    private void skipInvalid() {
+        while (isSkipped(index)) index++;
+    }
 
-        stepsInCurrentDirection++;
+    private boolean isSkipped(long index) {
+        return index <= Integer.MAX_VALUE && invalidCells.get((int) index)
+                || isOccupied(cellToWorld(spiralCoordinates(index)));
+    }
 
-        // Check if we need to change direction
-        if (stepsInCurrentDirection == stepsInCurrentLayer) {
-            direction = (direction + 1) % 4; // Change direction
-            stepsInCurrentDirection = 0;
+    /**
+     * A cell is occupied by any spawnpoint closer to it than to the next
+     * cell, so spawnpoints of other generators are taken into account too.
+     */
+    private boolean isOccupied(Vector2i spawnPoint) {
+        return occupied.anyConflict(spawnPoint.x, spawnPoint.y, Math.max(1, Math.min(gridSize.x, gridSize.y) / 2));
+    }
 
-            // Increase the layer size after completing two directions
-            if (direction == 0 || direction == 2) {
-                stepsInCurrentLayer++;
-            }
+    private Vector2i cellToWorld(Vector2i cell) {
+        return cell.mul(gridSize).add(offset);
+    }
+
+    /**
+     * Spiral pattern algorithm. Gets the cell at a position in the spiral.
+     * <p>
+     * The spiral starts at (0, 0) and walks right, down, left, up with
+     * segment lengths 1, 1, 2, 2, 3, 3, ... After <code>j</code> pairs of
+     * segments, <code>j(j + 1)</code> cells have been passed and the walk is
+     * at a corner of the spiral, which makes this <i>O(1)</i>.
+     *
+     * @param index position in the spiral
+     * @return coordinates of the cell, in grid units
+     */
+    static Vector2i spiralCoordinates(long index) {
+        long j = (long) ((Math.sqrt(4.0 * index + 1) - 1) / 2);
+        // correct floating point errors
+        while (j * (j + 1) > index) j--;
+        while ((j + 1) * (j + 2) <= index) j++;
+
+        // corner reached after j pairs
+        long corner = j % 2 == 0 ? -j / 2 : (j + 1) / 2;
+        long length = j + 1;
+        long sign = length % 2 == 1 ? 1 : -1;
+        long remaining = index - j * (j + 1);
+
+        if (remaining <= length)
+            return new Vector2i((int) (corner + sign * remaining), (int) corner);
+        return new Vector2i((int) (corner + sign * length), (int) (corner + sign * (remaining - length)));
+    }
+
+    /**
+     * Inverse of {@link #spiralCoordinates(long)}.
+     *
+     * @param x cell x coordinate, in grid units
+     * @param y cell y coordinate, in grid units
+     * @return position of the cell in the spiral
+     */
+    static long spiralIndex(long x, long y) {
+        if (x == 0 && y == 0) return 0;
+
+        if (y <= 0 && y < x && x <= 1 - y) { // moving right
+            long j = -2 * y;
+            return j * (j + 1) + (x - y);
+        } else if (x >= 1 && 1 - x < y && y <= x) { // moving down
+            long j = 2 * (x - 1);
+            return j * (j + 1) + (j + 1) + (y + x - 1);
+        } else if (y >= 1 && -y <= x && x < y) { // moving left
+            long j = 2 * y - 1;
+            return j * (j + 1) + (y - x);
+        } else { // moving up
+            long j = -2 * x - 1;
+            return j * (j + 1) + (j + 1) + (-x - y);
         }
     }
 
@@ -82,6 +137,10 @@ public class GridSpawnPointGenerator implements SpawnPointGenerator {
      */
     @Override
     public boolean isValid(Vector2i spawnPoint) {
+        return isOnGrid(spawnPoint) && !isOccupied(spawnPoint);
+    }
+
+    private boolean isOnGrid(Vector2i spawnPoint) {
         return (
                 (spawnPoint.x - offset.x) % gridSize.x == 0 &&
                         (spawnPoint.y - offset.y) % gridSize.y == 0
@@ -89,16 +148,72 @@ public class GridSpawnPointGenerator implements SpawnPointGenerator {
     }
 
     /**
-     * This method is ignored.
+     * Get the cells that upcoming calls to {@link #next()} will return,
+     * skipping the cells that are known to be invalid or occupied.
+     *
+     * @param count maximum amount of spawnpoints to return
+     * @return upcoming spawnpoints, in spiral order
      */
     @Override
-    public void add(Vector2i spawnPoint) {}
+    public List<Vector2i> peek(int count) {
+        List<Vector2i> upcoming = new ArrayList<>(count);
+        long i = index;
+        while (upcoming.size() < count) {
+            if (!isSkipped(i))
+                upcoming.add(cellToWorld(spiralCoordinates(i)));
+            i++;
+        }
+        return upcoming;
+    }
 
     /**
-     * This method is ignored.
+     * Remembers the cell rejected for its terrain, so it is skipped whenever
+     * the spiral is walked again. Rejections that may pass later are not
+     * remembered.
+     *
+     * @param spawnPoint spawnpoint that was rejected
      */
     @Override
-    public void remove(Vector2i spawnPoint) {}
+    public void reject(Vector2i spawnPoint) {
+        if (!isOnGrid(spawnPoint)) return;
+        long cellIndex = spiralIndex(
+                (spawnPoint.x - offset.x) / gridSize.x,
+                (spawnPoint.y - offset.y) / gridSize.y
+        );
+        if (cellIndex <= Integer.MAX_VALUE)
+            invalidCells.set((int) cellIndex);
+    }
+
+    /**
+     * Marks the cell of the spawnpoint as occupied, so it is not generated
+     * again.
+     */
+    @Override
+    public void add(Vector2i spawnPoint) {
+        occupied.add(spawnPoint.x, spawnPoint.y, 0, null);
+    }
+
+    @Override
+    public void remove(Vector2i spawnPoint) {
+        occupied.remove(spawnPoint.x, spawnPoint.y, null);
+    }
+
+    @Override
+    public void addAll(Map<UUID, Vector2i> spawnPoints) {
+        occupied.addAll(spawnPoints.values().stream()
+                .map(spawnPoint -> new SpawnPointTree.Entry<Void>(spawnPoint.x, spawnPoint.y, 0, null))
+                .toList());
+    }
+
+    /**
+     * Restarts the spiral at its center, skipping the cells that were
+     * rejected before. All cells are free again.
+     */
+    @Override
+    public void clear() {
+        index = 0;
+        occupied.clear();
+    }
 
     @Override
     public NbtCompound writeNbt() {
@@ -109,11 +224,8 @@ public class GridSpawnPointGenerator implements SpawnPointGenerator {
         nbt.putInt("offsetZ", offset.y);
 
         NbtCompound state = new NbtCompound();
-        state.putInt("currentX", currentX);
-        state.putInt("currentZ", currentY);
-        state.putInt("direction", direction);
-        state.putInt("stepsInCurrentDirection", stepsInCurrentDirection);
-        state.putInt("stepsInCurrentLayer", stepsInCurrentLayer);
+        state.putLong("index", index);
+        state.putLongArray("invalidCells", invalidCells.toLongArray());
         nbt.put("state", state);
 
         return nbt;
@@ -127,17 +239,19 @@ public class GridSpawnPointGenerator implements SpawnPointGenerator {
         offset.y = tag.getInt("offsetZ");
 
         NbtCompound state = tag.getCompound("state");
-        currentX = state.getInt("currentX");
-        currentY = state.getInt("currentZ");
-        direction = state.getInt("direction");
-        stepsInCurrentDirection = state.getInt("stepsInCurrentDirection");
-        stepsInCurrentLayer = state.getInt("stepsInCurrentLayer");
+        if (state.contains("index", 4)) {
+            index = state.getLong("index");
+        } else {
+            // legacy state, the walk had already moved to the next cell
+            index = spiralIndex(state.getInt("currentX"), state.getInt("currentZ"));
+        }
+        invalidCells = BitSet.valueOf(state.getLongArray("invalidCells"));
     }
 
     @Override
     public void modifyFromNbtPartial(NbtCompound tag) throws IllegalArgumentException {
         Set<String> differenceSet = new HashSet<>(tag.getKeys());
-        differenceSet.removeAll(Set.of("gridX", "gridZ", "offsetX", "offsetZ"));
+        differenceSet.removeAll(Set.of("gridX", "gridZ", "offsetX", "offsetZ", "index"));
         if (!differenceSet.isEmpty())
             throw new IllegalArgumentException("Invalid tag keys: " + differenceSet.stream().reduce((a, b) -> a + ", " + b).orElse("(none)"));
 
@@ -145,6 +259,7 @@ public class GridSpawnPointGenerator implements SpawnPointGenerator {
         if (tag.contains("gridZ") && tag.getType("gridZ") != 3) throw new IllegalArgumentException("gridZ must be an integer");
         if (tag.contains("offsetX") && tag.getType("offsetX") != 3) throw new IllegalArgumentException("offsetX must be an integer");
         if (tag.contains("offsetZ") && tag.getType("offsetZ") != 3) throw new IllegalArgumentException("offsetZ must be an integer");
+        if (tag.contains("index") && tag.getType("index") != 4) throw new IllegalArgumentException("index must be a long");
 
         if (tag.contains("gridX", 3))
             gridSize.x = tag.getInt("gridX");
@@ -154,5 +269,12 @@ public class GridSpawnPointGenerator implements SpawnPointGenerator {
             offset.x = tag.getInt("offsetX");
         if (tag.contains("offsetZ", 3))
             offset.y = tag.getInt("offsetZ");
+
+        if (tag.contains("index", 4))
+            index = tag.getLong("index");
+
+        // cells moved, so the rejected ones are not known anymore
+        if (tag.contains("gridX", 3) || tag.contains("gridZ", 3) || tag.contains("offsetX", 3) || tag.contains("offsetZ", 3))
+            invalidCells.clear();
     }
 }
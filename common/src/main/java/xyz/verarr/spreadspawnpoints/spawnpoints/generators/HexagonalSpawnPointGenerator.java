@@ -0,0 +1,304 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints.generators;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.world.ServerWorld;
+import org.jetbrains.annotations.Contract;
+import org.joml.Vector2i;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointTree;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public class HexagonalSpawnPointGenerator implements SpawnPointGenerator {
+    private static final int DEFAULT_SPACING = 16;
+    private static final double ROW_HEIGHT = Math.sqrt(3) / 2;
+    /**
+     * Corners of a ring, in multiples of the ring number, in axial coordinates.
+     */
+    private static final Vector2i[] RING_CORNERS = {
+            new Vector2i(-1, 1),
+            new Vector2i(0, 1),
+            new Vector2i(1, 0),
+            new Vector2i(1, -1),
+            new Vector2i(0, -1),
+            new Vector2i(-1, 0)
+    };
+    /**
+     * Direction to walk from each corner, in axial coordinates.
+     */
+    private static final Vector2i[] RING_DIRECTIONS = {
+            new Vector2i(1, 0),
+            new Vector2i(1, -1),
+            new Vector2i(0, -1),
+            new Vector2i(-1, 0),
+            new Vector2i(-1, 1),
+            new Vector2i(0, 1)
+    };
+
+    // settings
+    private int spacing = DEFAULT_SPACING;
+    public final Vector2i offset = new Vector2i(0);
+
+    // state
+    private long index = 0;
+    /**
+     * Ring indices of cells that have been rejected before, skipped when the
+     * rings are walked again after {@link #clear()} or after moving
+     * {@link #index} back. Only indices up to {@link Integer#MAX_VALUE} are
+     * remembered.
+     */
+    private BitSet invalidCells = new BitSet();
+    /**
+     * Spawnpoints assigned to players, whose cells are skipped. They are
+     * added again whenever the world is loaded, so they are not saved.
+     */
+    private final SpawnPointTree<Void> occupied = new SpawnPointTree<>();
+
+    public HexagonalSpawnPointGenerator(ServerWorld serverWorld) {
+        this.offset.set(
+                serverWorld.getSpawnPos().getX(),
+                serverWorld.getSpawnPos().getZ()
+        );
+    }
+
+    /**
+     * Generate a new spawnpoint and return it.
+     *
+     * @return the generated spawnpoint coordinates.
+     */
+    @Override
+    public Vector2i next() {
+        skipInvalid();
+        return cellToWorld(ringCoordinates(index++));
+    }
+
+    /**
+     * Advances past all cells that are known to be invalid or occupied.
+     */
+    @Contract(mutates = "this")
+    private void skipInvalid() {
+        while (isSkipped(index)) index++;
+    }
+
+    private boolean isSkipped(long index) {
+        return index <= Integer.MAX_VALUE && invalidCells.get((int) index)
+                || isOccupied(cellToWorld(ringCoordinates(index)));
+    }
+
+    /**
+     * A cell is occupied by any spawnpoint closer to it than to the next
+     * cell, so spawnpoints of other generators are taken into account too.
+     */
+    private boolean isOccupied(Vector2i spawnPoint) {
+        return occupied.anyConflict(spawnPoint.x, spawnPoint.y, Math.max(1, spacing / 2));
+    }
+
+    /**
+     * Converts axial lattice coordinates to world coordinates.
+     */
+    private Vector2i cellToWorld(Vector2i cell) {
+        return new Vector2i(
+                offset.x + (int) Math.round(spacing * (cell.x + cell.y / 2.0)),
+                offset.y + (int) Math.round(spacing * ROW_HEIGHT * cell.y)
+        );
+    }
+
+    /**
+     * Converts world coordinates to the axial coordinates of the nearest
+     * lattice cell.
+     */
+    private Vector2i worldToCell(Vector2i worldCoordinates) {
+        int r = (int) Math.round((worldCoordinates.y - offset.y) / (spacing * ROW_HEIGHT));
+        int q = (int) Math.round((double) (worldCoordinates.x - offset.x) / spacing - r / 2.0);
+        return new Vector2i(q, r);
+    }
+
+    /**
+     * Ring pattern algorithm. Gets the cell at a position in the rings.
+     * <p>
+     * Ring <code>k</code> holds <code>6k</code> cells and starts at
+     * <code>1 + 3k(k - 1)</code>, so the ring and the position on it can be
+     * computed directly.
+     *
+     * @param index position in the rings
+     * @return axial coordinates of the cell
+     */
+    static Vector2i ringCoordinates(long index) {
+        if (index == 0) return new Vector2i(0, 0);
+
+        long k = (long) ((3 + Math.sqrt(12.0 * index - 3)) / 6);
+        // correct floating point errors
+        while (1 + 3 * k * (k - 1) > index) k--;
+        while (1 + 3 * (k + 1) * k <= index) k++;
+
+        long positionInRing = index - (1 + 3 * k * (k - 1));
+        int side = (int) (positionInRing / k);
+        long step = positionInRing % k;
+        return new Vector2i(
+                (int) (RING_CORNERS[side].x * k + RING_DIRECTIONS[side].x * step),
+                (int) (RING_CORNERS[side].y * k + RING_DIRECTIONS[side].y * step)
+        );
+    }
+
+    /**
+     * Inverse of {@link #ringCoordinates(long)}.
+     *
+     * @param q axial q coordinate of the cell
+     * @param r axial r coordinate of the cell
+     * @return position of the cell in the rings
+     */
+    static long ringIndex(long q, long r) {
+        long k = (Math.abs(q) + Math.abs(r) + Math.abs(q + r)) / 2;
+        if (k == 0) return 0;
+
+        long ringStart = 1 + 3 * k * (k - 1);
+        if (r == k && q < 0) return ringStart + q + k;
+        if (q + r == k && q >= 0 && q < k) return ringStart + k + q;
+        if (q == k && r <= 0 && r > -k) return ringStart + 2 * k - r;
+        if (r == -k && q > 0) return ringStart + 4 * k - q;
+        if (q + r == -k && q <= 0 && q > -k) return ringStart + 4 * k - q;
+        return ringStart + 5 * k + r;
+    }
+
+    /**
+     * Test if a spawnpoint is valid, as in it may be generated by this generator.
+     *
+     * @param spawnPoint spawnpoint to test
+     * @return true if the spawnpoint may be generated by this generator, false otherwise.
+     */
+    @Override
+    public boolean isValid(Vector2i spawnPoint) {
+        return isOnLattice(spawnPoint) && !isOccupied(spawnPoint);
+    }
+
+    private boolean isOnLattice(Vector2i spawnPoint) {
+        return cellToWorld(worldToCell(spawnPoint)).equals(spawnPoint);
+    }
+
+    /**
+     * Get the cells that upcoming calls to {@link #next()} will return,
+     * skipping the cells that are known to be invalid or occupied.
+     *
+     * @param count maximum amount of spawnpoints to return
+     * @return upcoming spawnpoints, in ring order
+     */
+    @Override
+    public List<Vector2i> peek(int count) {
+        List<Vector2i> upcoming = new ArrayList<>(count);
+        long i = index;
+        while (upcoming.size() < count) {
+            if (!isSkipped(i))
+                upcoming.add(cellToWorld(ringCoordinates(i)));
+            i++;
+        }
+        return upcoming;
+    }
+
+    /**
+     * Remembers the cell rejected for its terrain, so it is skipped whenever
+     * the rings are walked again. Rejections that may pass later are not
+     * remembered.
+     *
+     * @param spawnPoint spawnpoint that was rejected
+     */
+    @Override
+    public void reject(Vector2i spawnPoint) {
+        if (!isOnLattice(spawnPoint)) return;
+        Vector2i cell = worldToCell(spawnPoint);
+        long cellIndex = ringIndex(cell.x, cell.y);
+        if (cellIndex <= Integer.MAX_VALUE)
+            invalidCells.set((int) cellIndex);
+    }
+
+    /**
+     * Marks the cell of the spawnpoint as occupied, so it is not generated
+     * again.
+     */
+    @Override
+    public void add(Vector2i spawnPoint) {
+        occupied.add(spawnPoint.x, spawnPoint.y, 0, null);
+    }
+
+    @Override
+    public void remove(Vector2i spawnPoint) {
+        occupied.remove(spawnPoint.x, spawnPoint.y, null);
+    }
+
+    @Override
+    public void addAll(Map<UUID, Vector2i> spawnPoints) {
+        occupied.addAll(spawnPoints.values().stream()
+                .map(spawnPoint -> new SpawnPointTree.Entry<Void>(spawnPoint.x, spawnPoint.y, 0, null))
+                .toList());
+    }
+
+    /**
+     * Restarts the rings at their center, skipping the cells that were
+     * rejected before. All cells are free again.
+     */
+    @Override
+    public void clear() {
+        index = 0;
+        occupied.clear();
+    }
+
+    // NBTSerializable stuff
+    @Override
+    public NbtCompound writeNbt() {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt("spacing", spacing);
+        nbt.putInt("offsetX", offset.x);
+        nbt.putInt("offsetZ", offset.y);
+
+        NbtCompound state = new NbtCompound();
+        state.putLong("index", index);
+        state.putLongArray("invalidCells", invalidCells.toLongArray());
+        nbt.put("state", state);
+
+        return nbt;
+    }
+
+    @Override
+    public void modifyFromNbt(NbtCompound tag) {
+        spacing = tag.getInt("spacing");
+        offset.x = tag.getInt("offsetX");
+        offset.y = tag.getInt("offsetZ");
+
+        NbtCompound state = tag.getCompound("state");
+        index = state.getLong("index");
+        invalidCells = BitSet.valueOf(state.getLongArray("invalidCells"));
+    }
+
+    @Override
+    public void modifyFromNbtPartial(NbtCompound tag) throws IllegalArgumentException {
+        Set<String> differenceSet = new HashSet<>(tag.getKeys());
+        differenceSet.removeAll(Set.of("spacing", "offsetX", "offsetZ", "index"));
+        if (!differenceSet.isEmpty())
+            throw new IllegalArgumentException("Invalid tag keys: " + differenceSet.stream().reduce((a, b) -> a + ", " + b).orElse("(none)"));
+
+        if (tag.contains("spacing") && tag.getType("spacing") != 3) throw new IllegalArgumentException("spacing must be an integer");
+        if (tag.contains("offsetX") && tag.getType("offsetX") != 3) throw new IllegalArgumentException("offsetX must be an integer");
+        if (tag.contains("offsetZ") && tag.getType("offsetZ") != 3) throw new IllegalArgumentException("offsetZ must be an integer");
+        if (tag.contains("index") && tag.getType("index") != 4) throw new IllegalArgumentException("index must be a long");
+        if (tag.contains("spacing", 3) && tag.getInt("spacing") <= 0) throw new IllegalArgumentException("spacing must be positive");
+
+        if (tag.contains("spacing", 3))
+            spacing = tag.getInt("spacing");
+        if (tag.contains("offsetX", 3))
+            offset.x = tag.getInt("offsetX");
+        if (tag.contains("offsetZ", 3))
+            offset.y = tag.getInt("offsetZ");
+
+        if (tag.contains("index", 4))
+            index = tag.getLong("index");
+
+        // cells moved, so the rejected ones are not known anymore
+        if (tag.contains("spacing", 3) || tag.contains("offsetX", 3) || tag.contains("offsetZ", 3))
+            invalidCells.clear();
+    }
+}
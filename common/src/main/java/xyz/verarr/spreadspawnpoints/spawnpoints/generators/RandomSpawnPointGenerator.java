@@ -6,37 +6,89 @@ import net.minecraft.util.math.random.LocalRandom;
 import net.minecraft.util.math.random.Random;
 import net.minecraft.world.border.WorldBorder;
 import org.joml.Vector2i;
-import xyz.verarr.spreadspawnpoints.mixin.LocalRandomAccessor;
 import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointRandom;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class RandomSpawnPointGenerator implements SpawnPointGenerator {
     private final Vector2i lowerBounds;
     private final Vector2i upperBounds;
-    private final Random random;
+    private final SpawnPointRandom random;
+    private boolean lowDiscrepancy = false;
+
+    /**
+     * Random rotation of the Halton sequence, so different worlds don't
+     * share the same spawnpoints.
+     */
+    private final double haltonRotationX;
+    private final double haltonRotationZ;
+    private long sampleIndex = 0;
 
     public RandomSpawnPointGenerator(ServerWorld serverWorld) {
         WorldBorder border = serverWorld.getWorldBorder();
         this.lowerBounds = new Vector2i((int) border.getBoundWest(), (int) border.getBoundNorth());
         this.upperBounds = new Vector2i((int) border.getBoundEast(), (int) border.getBoundSouth());
-        this.random = new LocalRandom(serverWorld.getSeed());
+        this.random = new SpawnPointRandom(serverWorld.getSeed());
+
+        Random rotation = new LocalRandom(serverWorld.getSeed());
+        this.haltonRotationX = rotation.nextDouble();
+        this.haltonRotationZ = rotation.nextDouble();
     }
 
     /**
      * Generate a new spawnpoint and return it.
+     * <p>
+     * In low-discrepancy mode the spawnpoints follow a rotated Halton
+     * sequence (bases 2 and 3), which covers the bounds evenly instead of
+     * clumping.
      *
      * @return the generated spawnpoint coordinates.
      */
     @Override
     public Vector2i next() {
+        if (lowDiscrepancy) {
+            // index 0 would be the corner of the bounds for every world
+            sampleIndex++;
+            return new Vector2i(
+                    scale(halton(sampleIndex, 2) + haltonRotationX, lowerBounds.x, upperBounds.x),
+                    scale(halton(sampleIndex, 3) + haltonRotationZ, lowerBounds.y, upperBounds.y)
+            );
+        }
+        SpawnPointRandom.Sample sample = random.next();
         return new Vector2i(
-                random.nextBetween(lowerBounds.x, upperBounds.x),
-                random.nextBetween(lowerBounds.y, upperBounds.y)
+                sample.nextBetween(lowerBounds.x, upperBounds.x),
+                sample.nextBetween(lowerBounds.y, upperBounds.y)
         );
     }
 
+    /**
+     * Radical inverse of an index, the Halton sequence for a given base.
+     *
+     * @return a value in [0, 1)
+     */
+    private static double halton(long index, int base) {
+        double fraction = 1;
+        double result = 0;
+        while (index > 0) {
+            fraction /= base;
+            result += fraction * (index % base);
+            index /= base;
+        }
+        return result;
+    }
+
+    /**
+     * Maps a value onto an inclusive range, wrapping it into [0, 1) first.
+     */
+    private static int scale(double value, int lower, int upper) {
+        value -= Math.floor(value);
+        long span = (long) upper - lower + 1;
+        return (int) (lower + Math.min(span - 1, (long) (value * span)));
+    }
+
     /**
      * Test if a spawnpoint is valid, as in it may be generated by this generator.
      *
@@ -65,6 +117,26 @@ public class RandomSpawnPointGenerator implements SpawnPointGenerator {
     @Override
     public void remove(Vector2i spawnPoint) {}
 
+    /**
+     * This method is ignored.
+     */
+    @Override
+    public void clear() {}
+
+    /**
+     * This generator cannot predict its output.
+     */
+    @Override
+    public List<Vector2i> peek(int count) {
+        return List.of();
+    }
+
+    /**
+     * This method is ignored.
+     */
+    @Override
+    public void reject(Vector2i spawnPoint) {}
+
     // NBTSerializable stuff
     @Override
     public NbtCompound writeNbt() {
@@ -73,7 +145,10 @@ public class RandomSpawnPointGenerator implements SpawnPointGenerator {
         nbt.putInt("upperX", upperBounds.x);
         nbt.putInt("lowerZ", lowerBounds.y);
         nbt.putInt("upperZ", upperBounds.y);
-        nbt.putLong("seed", ((LocalRandomAccessor) random).getSeed());
+        nbt.putLong("seed", random.getSeed());
+        nbt.putLong("counter", random.getCounter());
+        nbt.putBoolean("lowDiscrepancy", lowDiscrepancy);
+        nbt.putLong("sampleIndex", sampleIndex);
         return nbt;
     }
 
@@ -85,12 +160,15 @@ public class RandomSpawnPointGenerator implements SpawnPointGenerator {
         upperBounds.y = tag.getInt("upperZ");
 
         random.setSeed(tag.getLong("seed"));
+        random.setCounter(tag.getLong("counter"));
+        lowDiscrepancy = tag.getBoolean("lowDiscrepancy");
+        sampleIndex = tag.getLong("sampleIndex");
     }
 
     @Override
     public void modifyFromNbtPartial(NbtCompound tag) throws IllegalArgumentException {
         Set<String> differenceSet = new HashSet<>(tag.getKeys());
-        differenceSet.removeAll(Set.of("lowerX", "lowerZ", "upperX", "upperZ", "seed"));
+        differenceSet.removeAll(Set.of("lowerX", "lowerZ", "upperX", "upperZ", "seed", "counter", "lowDiscrepancy", "sampleIndex"));
         if (!differenceSet.isEmpty())
             throw new IllegalArgumentException("Invalid tag keys: " + differenceSet.stream().reduce((a, b) -> a + ", " + b).orElse("(none)"));
 
@@ -99,6 +177,9 @@ public class RandomSpawnPointGenerator implements SpawnPointGenerator {
         if (tag.contains("upperX") && tag.getType("upperX") != 3) throw new IllegalArgumentException("upperX must be an integer");
         if (tag.contains("upperZ") && tag.getType("upperZ") != 3) throw new IllegalArgumentException("upperZ must be an integer");
         if (tag.contains("seed") && tag.getType("seed") != 4) throw new IllegalArgumentException("seed must be a long");
+        if (tag.contains("counter") && tag.getType("counter") != 4) throw new IllegalArgumentException("counter must be a long");
+        if (tag.contains("lowDiscrepancy") && tag.getType("lowDiscrepancy") != 1) throw new IllegalArgumentException("lowDiscrepancy must be a boolean");
+        if (tag.contains("sampleIndex") && tag.getType("sampleIndex") != 4) throw new IllegalArgumentException("sampleIndex must be a long");
 
         if (tag.contains("lowerX", 3))
             lowerBounds.x = tag.getInt("lowerX");
@@ -111,5 +192,11 @@ public class RandomSpawnPointGenerator implements SpawnPointGenerator {
 
         if (tag.contains("seed", 4))
             random.setSeed(tag.getLong("seed"));
+        if (tag.contains("counter", 4))
+            random.setCounter(tag.getLong("counter"));
+        if (tag.contains("lowDiscrepancy", 1))
+            lowDiscrepancy = tag.getBoolean("lowDiscrepancy");
+        if (tag.contains("sampleIndex", 4))
+            sampleIndex = tag.getLong("sampleIndex");
     }
 }
@@ -1,36 +1,44 @@
 package xyz.verarr.spreadspawnpoints.spawnpoints.generators;
 
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
-import net.minecraft.util.math.random.LocalRandom;
-import net.minecraft.util.math.random.Random;
 import net.minecraft.world.border.WorldBorder;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
-import xyz.verarr.spreadspawnpoints.mixin.LocalRandomAccessor;
-import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.SpreadSpawnPoints;
+import xyz.verarr.spreadspawnpoints.spawnpoints.PlayerSpawnPointGenerator;
+import xyz.verarr.spreadspawnpoints.spawnpoints.RejectionReason;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointRandom;
+import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointTree;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-public class SpringSpawnPointGenerator implements SpawnPointGenerator {
+public class SpringSpawnPointGenerator implements PlayerSpawnPointGenerator {
     private static final int DEFAULT_RESERVE_RADIUS = 128;
     private static final int DEFAULT_OVERLAP_RADIUS = 256;
     private static final int DEFAULT_WORLDSPAWN_RESERVE_RADIUS = 256;
     private static final int DEFAULT_WORLDSPAWN_OVERLAP_RADIUS = 256 + 128;
-    private static final List<Vector2i> VECTOR_NEIGHBORS = Arrays.asList(
-            new Vector2i(-1, -1),
-            new Vector2i(-1, 0),
-            new Vector2i(-1, +1),
-            new Vector2i(0, -1),
-            new Vector2i(0, 0),
-            new Vector2i(0, +1),
-            new Vector2i(+1, -1),
-            new Vector2i(+1, 0),
-            new Vector2i(+1, +1)
-    );
+    private static final int DEFAULT_TARGET_ATTEMPTS = 64;
+    private static final int DEFAULT_MIN_RESERVE_RADIUS = 16;
+    private static final int DEFAULT_MAX_OVERLAP_RADIUS = 1024;
+    /**
+     * How many accepted spawnpoints the average attempts are measured over.
+     */
+    private static final int AUTO_TUNE_WINDOW = 16;
+    /**
+     * Fraction by which the radii are relaxed per adjustment.
+     */
+    private static final int AUTO_TUNE_STEP_DIVISOR = 8;
+    private static final int MAX_LOGGED_ADJUSTMENTS = 32;
 
     // settings
     private final Vector2i worldSpawn;
@@ -40,22 +48,127 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
     private int overlapRadius = DEFAULT_OVERLAP_RADIUS;
     private int worldspawnReserveRadius = DEFAULT_WORLDSPAWN_RESERVE_RADIUS;
     private int worldspawnOverlapRadius = DEFAULT_WORLDSPAWN_OVERLAP_RADIUS;
+    /**
+     * Per-player reserve radii, overriding {@link #reserveRadius}.
+     */
+    private final Map<UUID, Integer> claimRadii = new HashMap<>();
+    /**
+     * When enabled, {@link #reserveRadius} and {@link #overlapRadius} are
+     * relaxed whenever finding a spawnpoint takes more than
+     * {@link #targetAttempts} attempts on average, within
+     * {@link #minReserveRadius} and {@link #maxOverlapRadius}. Only attempts
+     * rejected for their spacing count, as other rejections, e.g. for the
+     * terrain, cannot be fixed by changing the radii.
+     * <p>
+     * The target is a number of attempts rather than a latency. Most of the
+     * time of a search is spent loading chunks for the terrain checks, which
+     * depends on the world and the server rather than on the radii, so
+     * tuning on time would relax the radii for slowness they do not cause.
+     * The latency of a search is roughly the attempts times the cost per
+     * candidate measured by the validation pipeline.
+     */
+    private boolean autoTune = false;
+    /**
+     * Average attempts per spawnpoint above which the radii are relaxed,
+     * standing in for a latency target.
+     */
+    private int targetAttempts = DEFAULT_TARGET_ATTEMPTS;
+    private int minReserveRadius = DEFAULT_MIN_RESERVE_RADIUS;
+    private int maxOverlapRadius = DEFAULT_MAX_OVERLAP_RADIUS;
 
     // state
-    private final Random random;
+    private final SpawnPointRandom random;
     private Map<Vector2i, Set<Vector2i>> grid = new HashMap<>();
+    /**
+     * Cell size of {@link #grid}. Normally {@link #overlapRadius}, but lags
+     * behind it while a new grid is built in the background.
+     */
+    private int gridCellSize = DEFAULT_OVERLAP_RADIUS;
+    /**
+     * Grid being built for a new cell size, and the changes made to the
+     * current grid since its snapshot was taken, to be replayed on it.
+     */
+    private CompletableFuture<Map<Vector2i, Set<Vector2i>>> gridMigration = null;
+    private int gridMigrationCellSize;
+    private final List<GridChange> gridMigrationChanges = new ArrayList<>();
+
+    private record GridChange(Vector2i spawnPoint, boolean added) {}
+    /**
+     * Reserved areas of all spawnpoints, which may have different radii.
+     * Like the grid, it keeps the old radii while a tree with new ones is
+     * built in the background, and the changes made since its snapshot are
+     * replayed on the new tree.
+     */
+    private SpawnPointTree<UUID> claims = new SpawnPointTree<>();
+    private CompletableFuture<SpawnPointTree<UUID>> claimsMigration = null;
+    private final List<ClaimChange> claimsMigrationChanges = new ArrayList<>();
+
+    private record ClaimChange(UUID player, Vector2i spawnPoint, boolean added) {}
+    /**
+     * Amount of spawnpoints in the grid per whole-block distance from
+     * {@link #distanceOrigin}, so the greatest distance can be kept up to
+     * date on removal.
+     */
+    private TreeMap<Integer, Integer> distanceCounts = new TreeMap<>();
+    /**
+     * Position {@link #distanceCounts} is measured from. Normally the world
+     * spawn, but lags behind it while the distances are recounted in the
+     * background.
+     */
+    private final Vector2i distanceOrigin;
+    private CompletableFuture<TreeMap<Integer, Integer>> distanceMigration = null;
+    private Vector2i distanceMigrationOrigin;
+    private final List<GridChange> distanceMigrationChanges = new ArrayList<>();
+    /**
+     * How many more players hold a spawnpoint at the same position as one
+     * already in the grid, e.g. after an import. The grid and
+     * {@link #distanceCounts} hold each position once, and it stays in them
+     * until its last holder is removed.
+     */
+    private final Map<Vector2i, Integer> duplicates = new HashMap<>();
     private int greatestDistanceFromWorldspawn = 0;
+    private int rejectedSinceAdd = 0;
+    private int windowAttempts = 0;
+    private int windowSpawnPoints = 0;
+    private boolean exhausted = false;
+
+    /**
+     * A change made by auto-tuning.
+     *
+     * @param time            when the change was made, in milliseconds since the epoch
+     * @param averageAttempts average attempts per spawnpoint that caused the change
+     * @param reserveRadius   new reserve radius
+     * @param overlapRadius   new overlap radius
+     */
+    private record Adjustment(long time, double averageAttempts, int reserveRadius, int overlapRadius) {
+        private NbtCompound writeNbt() {
+            NbtCompound nbt = new NbtCompound();
+            nbt.putLong("time", time);
+            nbt.putDouble("averageAttempts", averageAttempts);
+            nbt.putInt("reserveRadius", reserveRadius);
+            nbt.putInt("overlapRadius", overlapRadius);
+            return nbt;
+        }
+
+        private static Adjustment fromNbt(NbtCompound nbt) {
+            return new Adjustment(nbt.getLong("time"), nbt.getDouble("averageAttempts"),
+                    nbt.getInt("reserveRadius"), nbt.getInt("overlapRadius"));
+        }
+    }
+
+    private final Deque<Adjustment> adjustments = new ArrayDeque<>();
 
     public SpringSpawnPointGenerator(ServerWorld serverWorld) {
         WorldBorder border = serverWorld.getWorldBorder();
         this.lowerBounds = new Vector2i((int) border.getBoundWest(), (int) border.getBoundNorth());
         this.upperBounds = new Vector2i((int) border.getBoundEast(), (int) border.getBoundSouth());
-        this.random = new LocalRandom(serverWorld.getSeed());
+        this.random = new SpawnPointRandom(serverWorld.getSeed());
 
         BlockPos worldSpawn = serverWorld.getSpawnPos();
         this.worldSpawn = new Vector2i(
                 worldSpawn.getX(), worldSpawn.getZ()
         );
+        this.distanceOrigin = new Vector2i(this.worldSpawn);
     }
 
     /**
@@ -65,6 +178,7 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
      */
     @Override
     public Vector2i next() {
+        finishMigrations();
         int lowerX = MathHelper.clamp(
                 -greatestDistanceFromWorldspawn - overlapRadius,
                 lowerBounds.x, worldSpawn.x - worldspawnOverlapRadius
@@ -82,23 +196,40 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
                 worldSpawn.y + worldspawnOverlapRadius, upperBounds.y
         );
 
+        SpawnPointRandom.Sample sample = random.next();
         return new Vector2i(
-                random.nextBetween(lowerX, upperX),
-                random.nextBetween(lowerZ, upperZ)
+                sample.nextBetween(lowerX, upperX),
+                sample.nextBetween(lowerZ, upperZ)
         );
     }
 
+    /**
+     * This generator's spawnpoints don't depend on the player.
+     */
+    @Override
+    public Vector2i next(PlayerEntity player) {
+        return next();
+    }
+
     private Vector2i gridCoordinates(Vector2i worldCoordinates) {
-        return new Vector2i(worldCoordinates.x / overlapRadius,
-                worldCoordinates.y / overlapRadius);
+        return gridCoordinates(worldCoordinates, gridCellSize);
+    }
+
+    private static Vector2i gridCoordinates(Vector2i worldCoordinates, int cellSize) {
+        return new Vector2i(worldCoordinates.x / cellSize,
+                worldCoordinates.y / cellSize);
     }
 
     private boolean overlaps(Vector2i a, Vector2i b) {
         return a.distance(b) < overlapRadius;
     }
 
-    private boolean conflicts(Vector2i a, Vector2i b) {
-        return a.distance(b) < reserveRadius;
+    private int claimRadius(UUID player) {
+        return claimRadius(player, claimRadii, reserveRadius);
+    }
+
+    private static int claimRadius(UUID player, Map<UUID, Integer> claimRadii, int reserveRadius) {
+        return player == null ? reserveRadius : claimRadii.getOrDefault(player, reserveRadius);
     }
 
     private boolean overlapsWithWorldspawn(Vector2i vec) {
@@ -117,6 +248,24 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
      */
     @Override
     public boolean isValid(Vector2i spawnPoint) {
+        return isValid(spawnPoint, reserveRadius);
+    }
+
+    /**
+     * Test if a spawnpoint is valid for a player, using the player's reserve
+     * radius.
+     *
+     * @param player     the player the spawnpoint is for
+     * @param spawnPoint spawnpoint to test
+     * @return true if the spawnpoint may be generated by this generator, false otherwise.
+     */
+    @Override
+    public boolean isValid(PlayerEntity player, Vector2i spawnPoint) {
+        return isValid(spawnPoint, claimRadius(player.getUuid()));
+    }
+
+    private boolean isValid(Vector2i spawnPoint, int radius) {
+        finishMigrations();
         if (!(lowerBounds.x <= spawnPoint.x &&
                 upperBounds.x >= spawnPoint.x &&
                 lowerBounds.y <= spawnPoint.y &&
@@ -130,14 +279,12 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
         if (overlapsWithWorldspawn(spawnPoint))
             overlaps = true;
 
-        List<Vector2i> affectedSpawnPoints =
-                getAffectedSpawnPoints(spawnPoint).toList();
-        for (Vector2i affectedSpawnPoint : affectedSpawnPoints) {
-            if (conflicts(affectedSpawnPoint, spawnPoint))
-                return false;
-            if (!overlaps && overlaps(affectedSpawnPoint, spawnPoint))
-                overlaps = true;
-        }
+        if (claims.anyConflict(spawnPoint.x, spawnPoint.y, radius))
+            return false;
+
+        if (!overlaps)
+            overlaps = getAffectedSpawnPoints(spawnPoint)
+                    .anyMatch(affectedSpawnPoint -> overlaps(affectedSpawnPoint, spawnPoint));
 
         if (!overlaps)
             return false;
@@ -146,15 +293,12 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
     }
 
     private @NotNull Stream<Vector2i> getAffectedSpawnPoints(Vector2i spawnPoint) {
-        return VECTOR_NEIGHBORS.stream()
-                .map(vec -> {
-                    try {
-                        return (Vector2i) (vec.clone());
-                    } catch (CloneNotSupportedException e) {
-                        throw new RuntimeException(e);
-                    }
-                })
-                .map(vec -> vec.add(gridCoordinates(spawnPoint)))
+        Vector2i center = gridCoordinates(spawnPoint);
+        // while migrating, the grid's cells may be smaller than overlapRadius
+        int range = Math.max(1, (overlapRadius + gridCellSize - 1) / gridCellSize);
+        return IntStream.rangeClosed(-range, range).boxed()
+                .flatMap(x -> IntStream.rangeClosed(-range, range)
+                        .mapToObj(z -> new Vector2i(center.x + x, center.y + z)))
                 .filter(grid::containsKey)
                 .flatMap(gridCoordinates -> grid.get(gridCoordinates).stream());
     }
@@ -168,9 +312,73 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
      */
     @Override
     public void add(Vector2i spawnPoint) {
-        if ((int) spawnPoint.distance(worldSpawn) > greatestDistanceFromWorldspawn)
-            greatestDistanceFromWorldspawn = (int) spawnPoint.distance(worldSpawn);
-        grid.computeIfAbsent(gridCoordinates(spawnPoint), c -> new HashSet<>()).add(spawnPoint);
+        add(null, spawnPoint);
+    }
+
+    @Override
+    public void add(UUID player, Vector2i spawnPoint) {
+        addToGrid(spawnPoint);
+        claims.add(spawnPoint.x, spawnPoint.y, claimRadius(player), player);
+        if (claimsMigration != null)
+            claimsMigrationChanges.add(new ClaimChange(player, spawnPoint, true));
+    }
+
+    /**
+     * Counts the attempts it took to find the accepted spawnpoint towards
+     * auto-tuning.
+     *
+     * @param spawnPoint spawnpoint that was accepted
+     */
+    @Override
+    public void accept(Vector2i spawnPoint) {
+        windowAttempts += rejectedSinceAdd + 1;
+        windowSpawnPoints++;
+        rejectedSinceAdd = 0;
+        if (windowSpawnPoints >= AUTO_TUNE_WINDOW) {
+            double averageAttempts = (double) windowAttempts / windowSpawnPoints;
+            windowAttempts = 0;
+            windowSpawnPoints = 0;
+            if (averageAttempts > targetAttempts)
+                relax(averageAttempts);
+        }
+    }
+
+    private void addToGrid(Vector2i spawnPoint) {
+        finishMigrations();
+        if (!grid.computeIfAbsent(gridCoordinates(spawnPoint), c -> new HashSet<>()).add(spawnPoint)) {
+            duplicates.merge(spawnPoint, 1, Integer::sum);
+            return;
+        }
+        if (gridMigration != null)
+            gridMigrationChanges.add(new GridChange(spawnPoint, true));
+        if (distanceMigration != null)
+            distanceMigrationChanges.add(new GridChange(spawnPoint, true));
+        distanceCounts.merge((int) spawnPoint.distance(distanceOrigin), 1, Integer::sum);
+        greatestDistanceFromWorldspawn = distanceCounts.lastKey();
+    }
+
+    private void removeFromGrid(Vector2i spawnPoint) {
+        finishMigrations();
+        Integer duplicateCount = duplicates.get(spawnPoint);
+        if (duplicateCount != null) {
+            // another player still holds this position
+            if (duplicateCount > 1) duplicates.put(spawnPoint, duplicateCount - 1);
+            else duplicates.remove(spawnPoint);
+            return;
+        }
+        Vector2i gridCoordinates = gridCoordinates(spawnPoint);
+        Set<Vector2i> cell = grid.get(gridCoordinates);
+        if (cell == null || !cell.remove(spawnPoint))
+            return;
+        if (cell.isEmpty())
+            grid.remove(gridCoordinates);
+        if (gridMigration != null)
+            gridMigrationChanges.add(new GridChange(spawnPoint, false));
+        if (distanceMigration != null)
+            distanceMigrationChanges.add(new GridChange(spawnPoint, false));
+
+        distanceCounts.computeIfPresent((int) spawnPoint.distance(distanceOrigin), (distance, count) -> count > 1 ? count - 1 : null);
+        greatestDistanceFromWorldspawn = distanceCounts.isEmpty() ? 0 : distanceCounts.lastKey();
     }
 
     /**
@@ -182,9 +390,177 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
      */
     @Override
     public void remove(Vector2i spawnPoint) {
-        if (!grid.containsKey(gridCoordinates(spawnPoint)))
+        remove(null, spawnPoint);
+    }
+
+    @Override
+    public void remove(UUID player, Vector2i spawnPoint) {
+        finishMigrations();
+        claims.remove(spawnPoint.x, spawnPoint.y, player);
+        if (claimsMigration != null)
+            claimsMigrationChanges.add(new ClaimChange(player, spawnPoint, false));
+        removeFromGrid(spawnPoint);
+    }
+
+    /**
+     * Bulk loads the reserved areas into a balanced tree in
+     * <i>O(n log n)</i>, instead of inserting them one by one.
+     *
+     * @param spawnPoints spawnpoints to add, by the UUID of their player
+     */
+    @Override
+    public void addAll(Map<UUID, Vector2i> spawnPoints) {
+        List<SpawnPointTree.Entry<UUID>> entries = new ArrayList<>(spawnPoints.size());
+        spawnPoints.forEach((player, spawnPoint) -> {
+            addToGrid(spawnPoint);
+            entries.add(new SpawnPointTree.Entry<>(spawnPoint.x, spawnPoint.y, claimRadius(player), player));
+        });
+        claims.addAll(entries);
+        if (claimsMigration != null)
+            spawnPoints.forEach((player, spawnPoint) -> claimsMigrationChanges.add(new ClaimChange(player, spawnPoint, true)));
+    }
+
+    @Override
+    public void clear() {
+        gridMigration = null;
+        gridMigrationChanges.clear();
+        grid.clear();
+        gridCellSize = overlapRadius;
+        claimsMigration = null;
+        claimsMigrationChanges.clear();
+        claims.clear();
+        distanceMigration = null;
+        distanceMigrationChanges.clear();
+        distanceCounts.clear();
+        distanceOrigin.set(worldSpawn);
+        duplicates.clear();
+        greatestDistanceFromWorldspawn = 0;
+        rejectedSinceAdd = 0;
+    }
+
+    /**
+     * Starts rebuilding the reserved areas with the current reserve radii
+     * from a snapshot of the current ones, on a background thread. The
+     * current tree keeps being used and updated until the new one is
+     * swapped in by {@link #finishClaimsMigration()}.
+     */
+    private void migrateClaims() {
+        claimsMigration = null;
+        claimsMigrationChanges.clear();
+        if (claims.size() == 0)
             return;
-        grid.get(gridCoordinates(spawnPoint)).remove(spawnPoint);
+
+        List<SpawnPointTree.Entry<UUID>> snapshot = claims.entries();
+        Map<UUID, Integer> radii = new HashMap<>(claimRadii);
+        int defaultRadius = reserveRadius;
+        claimsMigration = CompletableFuture.supplyAsync(() -> {
+            List<SpawnPointTree.Entry<UUID>> entries = new ArrayList<>(snapshot.size());
+            for (SpawnPointTree.Entry<UUID> entry : snapshot)
+                entries.add(new SpawnPointTree.Entry<>(entry.x(), entry.z(),
+                        claimRadius(entry.value(), radii, defaultRadius), entry.value()));
+            SpawnPointTree<UUID> tree = new SpawnPointTree<>();
+            tree.addAll(entries);
+            return tree;
+        }, Util.getMainWorkerExecutor());
+    }
+
+    /**
+     * Swaps in the tree built by {@link #migrateClaims()} once it is done,
+     * replaying the changes made since its snapshot with the current radii.
+     */
+    private void finishClaimsMigration() {
+        if (claimsMigration == null || !claimsMigration.isDone())
+            return;
+
+        SpawnPointTree<UUID> newClaims = claimsMigration.join();
+        for (ClaimChange change : claimsMigrationChanges) {
+            Vector2i spawnPoint = change.spawnPoint();
+            if (change.added())
+                newClaims.add(spawnPoint.x, spawnPoint.y, claimRadius(change.player()), change.player());
+            else
+                newClaims.remove(spawnPoint.x, spawnPoint.y, change.player());
+        }
+        claimsMigration = null;
+        claimsMigrationChanges.clear();
+        claims = newClaims;
+    }
+
+    /**
+     * Swaps in whatever was rebuilt in the background and is done.
+     */
+    private void finishMigrations() {
+        finishGridMigration();
+        finishClaimsMigration();
+        finishDistanceMigration();
+    }
+
+    /**
+     * This generator cannot predict its output.
+     */
+    @Override
+    public List<Vector2i> peek(int count) {
+        return List.of();
+    }
+
+    /**
+     * This method is ignored, as it is not known whether the spacing caused
+     * the rejection.
+     */
+    @Override
+    public void reject(Vector2i spawnPoint) {}
+
+    /**
+     * Counts a rejection for the spacing towards the attempts of the next
+     * spawnpoint. When auto-tuning, a single spawnpoint taking far more
+     * attempts than the target relaxes the radii right away instead of
+     * waiting for it to be found.
+     *
+     * @param spawnPoint the rejected spawnpoint
+     * @param reason     why it was rejected
+     */
+    @Override
+    public void reject(Vector2i spawnPoint, RejectionReason reason) {
+        if (reason != RejectionReason.GENERATOR) return;
+        rejectedSinceAdd++;
+        if (rejectedSinceAdd % (targetAttempts * AUTO_TUNE_WINDOW) == 0)
+            relax(rejectedSinceAdd);
+    }
+
+    /**
+     * Relaxes {@link #reserveRadius} and {@link #overlapRadius} by one step
+     * within their bounds, if auto-tuning is enabled.
+     *
+     * @param averageAttempts the measured attempts per spawnpoint
+     */
+    private void relax(double averageAttempts) {
+        if (!autoTune) return;
+
+        int newReserveRadius = Math.max(minReserveRadius,
+                reserveRadius - Math.max(1, reserveRadius / AUTO_TUNE_STEP_DIVISOR));
+        int newOverlapRadius = Math.min(maxOverlapRadius,
+                overlapRadius + Math.max(1, overlapRadius / AUTO_TUNE_STEP_DIVISOR));
+        if (newReserveRadius >= reserveRadius && newOverlapRadius <= overlapRadius) {
+            if (!exhausted)
+                SpreadSpawnPoints.LOGGER.warn("Spring generator needs {} attempts per spawnpoint (target {}), but its radii are at their bounds (reserveRadius {}, overlapRadius {})",
+                        "%.1f".formatted(averageAttempts), targetAttempts, reserveRadius, overlapRadius);
+            exhausted = true;
+            return;
+        }
+
+        SpreadSpawnPoints.LOGGER.info("Spring generator needs {} attempts per spawnpoint (target {}), relaxing reserveRadius {} -> {}, overlapRadius {} -> {}",
+                "%.1f".formatted(averageAttempts), targetAttempts, reserveRadius, newReserveRadius, overlapRadius, newOverlapRadius);
+        adjustments.addLast(new Adjustment(System.currentTimeMillis(), averageAttempts, newReserveRadius, newOverlapRadius));
+        while (adjustments.size() > MAX_LOGGED_ADJUSTMENTS)
+            adjustments.removeFirst();
+
+        boolean reserveChanged = newReserveRadius != reserveRadius;
+        boolean overlapChanged = newOverlapRadius != overlapRadius;
+        reserveRadius = newReserveRadius;
+        overlapRadius = newOverlapRadius;
+        if (overlapChanged)
+            migrateGrid();
+        if (reserveChanged)
+            migrateClaims();
     }
 
     // NBTSerializable stuff
@@ -196,7 +572,8 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
         nbt.putInt("lowerZ", lowerBounds.y);
         nbt.putInt("upperZ", upperBounds.y);
 
-        nbt.putLong("seed", ((LocalRandomAccessor) random).getSeed());
+        nbt.putLong("seed", random.getSeed());
+        nbt.putLong("counter", random.getCounter());
 
         nbt.putInt("reserveRadius", reserveRadius);
         nbt.putInt("overlapRadius", overlapRadius);
@@ -206,6 +583,18 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
         nbt.putInt("worldspawnX", worldSpawn.x);
         nbt.putInt("worldspawnZ", worldSpawn.y);
 
+        NbtCompound claimRadiiNbt = new NbtCompound();
+        claimRadii.forEach((uuid, radius) -> claimRadiiNbt.putInt(uuid.toString(), radius));
+        nbt.put("claimRadii", claimRadiiNbt);
+
+        nbt.putBoolean("autoTune", autoTune);
+        nbt.putInt("targetAttempts", targetAttempts);
+        nbt.putInt("minReserveRadius", minReserveRadius);
+        nbt.putInt("maxOverlapRadius", maxOverlapRadius);
+        NbtList adjustmentsNbt = new NbtList();
+        adjustments.forEach(adjustment -> adjustmentsNbt.add(adjustment.writeNbt()));
+        nbt.put("adjustments", adjustmentsNbt);
+
         return nbt;
     }
 
@@ -217,6 +606,7 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
         upperBounds.y = tag.getInt("upperZ");
 
         random.setSeed(tag.getLong("seed"));
+        random.setCounter(tag.getLong("counter"));
 
         reserveRadius = tag.getInt("reserveRadius");
         overlapRadius = tag.getInt("overlapRadius");
@@ -225,20 +615,135 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
 
         worldSpawn.x = tag.getInt("worldspawnX");
         worldSpawn.y = tag.getInt("worldspawnZ");
+
+        claimRadii.clear();
+        NbtCompound claimRadiiNbt = tag.getCompound("claimRadii");
+        claimRadiiNbt.getKeys().forEach(uuid ->
+                claimRadii.put(UUID.fromString(uuid), claimRadiiNbt.getInt(uuid)));
+
+        autoTune = tag.getBoolean("autoTune");
+        targetAttempts = tag.contains("targetAttempts", 3) ? tag.getInt("targetAttempts") : DEFAULT_TARGET_ATTEMPTS;
+        minReserveRadius = tag.contains("minReserveRadius", 3) ? tag.getInt("minReserveRadius") : DEFAULT_MIN_RESERVE_RADIUS;
+        maxOverlapRadius = tag.contains("maxOverlapRadius", 3) ? tag.getInt("maxOverlapRadius") : DEFAULT_MAX_OVERLAP_RADIUS;
+        adjustments.clear();
+        NbtList adjustmentsNbt = tag.getList("adjustments", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < adjustmentsNbt.size(); i++)
+            adjustments.addLast(Adjustment.fromNbt(adjustmentsNbt.getCompound(i)));
+        exhausted = false;
+
+        migrateGrid();
+        migrateDistances();
+        migrateClaims();
     }
 
+    /**
+     * Starts building a grid with cells of {@link #overlapRadius} from a
+     * snapshot of the current one, on a background thread. The current grid
+     * keeps being used and updated until the new one is swapped in by
+     * {@link #finishGridMigration()}.
+     */
     private void migrateGrid() {
-        Map<Vector2i, Set<Vector2i>> oldGrid = grid;
-        grid = new HashMap<>();
-        oldGrid.forEach((gridCoordinates, spawnPoints) -> {
-            spawnPoints.forEach(this::add);
-        });
+        gridMigration = null;
+        gridMigrationChanges.clear();
+        if (grid.isEmpty())
+            gridCellSize = overlapRadius;
+        if (gridCellSize == overlapRadius)
+            return;
+
+        int cellSize = overlapRadius;
+        List<Vector2i> snapshot = new ArrayList<>();
+        grid.values().forEach(snapshot::addAll);
+        gridMigrationCellSize = cellSize;
+        gridMigration = CompletableFuture.supplyAsync(() -> buildGrid(snapshot, cellSize), Util.getMainWorkerExecutor());
+    }
+
+    private static Map<Vector2i, Set<Vector2i>> buildGrid(List<Vector2i> spawnPoints, int cellSize) {
+        Map<Vector2i, Set<Vector2i>> grid = new HashMap<>(spawnPoints.size() * 2);
+        for (Vector2i spawnPoint : spawnPoints)
+            grid.computeIfAbsent(gridCoordinates(spawnPoint, cellSize), c -> new HashSet<>()).add(spawnPoint);
+        return grid;
+    }
+
+    /**
+     * Swaps in the grid built by {@link #migrateGrid()} once it is done,
+     * replaying the changes made since its snapshot.
+     */
+    private void finishGridMigration() {
+        if (gridMigration == null || !gridMigration.isDone())
+            return;
+
+        Map<Vector2i, Set<Vector2i>> newGrid = gridMigration.join();
+        int cellSize = gridMigrationCellSize;
+        for (GridChange change : gridMigrationChanges) {
+            Vector2i gridCoordinates = gridCoordinates(change.spawnPoint(), cellSize);
+            if (change.added()) {
+                newGrid.computeIfAbsent(gridCoordinates, c -> new HashSet<>()).add(change.spawnPoint());
+            } else {
+                Set<Vector2i> cell = newGrid.get(gridCoordinates);
+                if (cell != null && cell.remove(change.spawnPoint()) && cell.isEmpty())
+                    newGrid.remove(gridCoordinates);
+            }
+        }
+        gridMigration = null;
+        gridMigrationChanges.clear();
+        grid = newGrid;
+        gridCellSize = cellSize;
+    }
+
+    /**
+     * Starts recounting the distances of all spawnpoints from world spawn
+     * after it moved, from a snapshot of the grid on a background thread.
+     * The current counts keep being used and updated until the new ones are
+     * swapped in by {@link #finishDistanceMigration()}.
+     */
+    private void migrateDistances() {
+        distanceMigration = null;
+        distanceMigrationChanges.clear();
+        if (grid.isEmpty())
+            distanceOrigin.set(worldSpawn);
+        if (distanceOrigin.equals(worldSpawn))
+            return;
+
+        Vector2i origin = new Vector2i(worldSpawn);
+        List<Vector2i> snapshot = new ArrayList<>();
+        grid.values().forEach(snapshot::addAll);
+        distanceMigrationOrigin = origin;
+        distanceMigration = CompletableFuture.supplyAsync(() -> {
+            TreeMap<Integer, Integer> counts = new TreeMap<>();
+            for (Vector2i spawnPoint : snapshot)
+                counts.merge((int) spawnPoint.distance(origin), 1, Integer::sum);
+            return counts;
+        }, Util.getMainWorkerExecutor());
+    }
+
+    /**
+     * Swaps in the counts made by {@link #migrateDistances()} once they are
+     * done, replaying the changes made since their snapshot.
+     */
+    private void finishDistanceMigration() {
+        if (distanceMigration == null || !distanceMigration.isDone())
+            return;
+
+        TreeMap<Integer, Integer> counts = distanceMigration.join();
+        Vector2i origin = distanceMigrationOrigin;
+        for (GridChange change : distanceMigrationChanges) {
+            int distance = (int) change.spawnPoint().distance(origin);
+            if (change.added())
+                counts.merge(distance, 1, Integer::sum);
+            else
+                counts.computeIfPresent(distance, (key, count) -> count > 1 ? count - 1 : null);
+        }
+        distanceMigration = null;
+        distanceMigrationChanges.clear();
+        distanceCounts = counts;
+        distanceOrigin.set(origin);
+        greatestDistanceFromWorldspawn = counts.isEmpty() ? 0 : counts.lastKey();
     }
 
     @Override
     public void modifyFromNbtPartial(NbtCompound tag) throws IllegalArgumentException {
         Set<String> differenceSet = new HashSet<>(tag.getKeys());
-        differenceSet.removeAll(Set.of("lowerX", "lowerZ", "upperX", "upperZ", "seed", "reserveRadius", "overlapRadius", "worldspawnReserveRadius", "worldspawnOverlapRadius", "worldspawnX", "worldspawnZ"));
+        differenceSet.removeAll(Set.of("lowerX", "lowerZ", "upperX", "upperZ", "seed", "counter", "reserveRadius", "overlapRadius", "worldspawnReserveRadius", "worldspawnOverlapRadius", "worldspawnX", "worldspawnZ", "claimRadii", "autoTune", "targetAttempts", "minReserveRadius", "maxOverlapRadius"));
         if (!differenceSet.isEmpty())
             throw new IllegalArgumentException("Invalid tag keys: " + differenceSet.stream().reduce((a, b) -> a + ", " + b).orElse("(none)"));
 
@@ -247,12 +752,28 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
         if (tag.contains("upperX") && tag.getType("upperX") != 3) throw new IllegalArgumentException("upperX must be an integer");
         if (tag.contains("upperZ") && tag.getType("upperZ") != 3) throw new IllegalArgumentException("upperZ must be an integer");
         if (tag.contains("seed") && tag.getType("seed") != 4) throw new IllegalArgumentException("seed must be a long");
+        if (tag.contains("counter") && tag.getType("counter") != 4) throw new IllegalArgumentException("counter must be a long");
         if (tag.contains("reserveRadius") && tag.getType("reserveRadius") != 3) throw new IllegalArgumentException("reserveRadius must be an integer");
         if (tag.contains("overlapRadius") && tag.getType("overlapRadius") != 3) throw new IllegalArgumentException("overlapRadius must be an integer");
         if (tag.contains("worldspawnReserveRadius") && tag.getType("worldspawnReserveRadius") != 3) throw new IllegalArgumentException("worldspawnReserveRadius must be an integer");
         if (tag.contains("worldspawnOverlapRadius") && tag.getType("worldspawnOverlapRadius") != 3) throw new IllegalArgumentException("worldspawnOverlapRadius must be an integer");
         if (tag.contains("worldspawnX") && tag.getType("worldspawnX") != 3) throw new IllegalArgumentException("worldspawnX must be an integer");
         if (tag.contains("worldspawnZ") && tag.getType("worldspawnZ") != 3) throw new IllegalArgumentException("worldspawnZ must be an integer");
+        if (tag.contains("claimRadii") && tag.getType("claimRadii") != 10) throw new IllegalArgumentException("claimRadii must be a compound");
+        NbtCompound claimRadiiNbt = tag.getCompound("claimRadii");
+        for (String uuid : claimRadiiNbt.getKeys()) {
+            try {
+                UUID.fromString(uuid);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("claimRadii keys must be player UUIDs");
+            }
+            if (claimRadiiNbt.getType(uuid) != 3) throw new IllegalArgumentException("claimRadii values must be integers");
+        }
+        if (tag.contains("autoTune") && tag.getType("autoTune") != 1) throw new IllegalArgumentException("autoTune must be a boolean");
+        if (tag.contains("targetAttempts") && tag.getType("targetAttempts") != 3) throw new IllegalArgumentException("targetAttempts must be an integer");
+        if (tag.contains("targetAttempts") && tag.getInt("targetAttempts") < 1) throw new IllegalArgumentException("targetAttempts must be at least 1");
+        if (tag.contains("minReserveRadius") && tag.getType("minReserveRadius") != 3) throw new IllegalArgumentException("minReserveRadius must be an integer");
+        if (tag.contains("maxOverlapRadius") && tag.getType("maxOverlapRadius") != 3) throw new IllegalArgumentException("maxOverlapRadius must be an integer");
 
         if (tag.contains("lowerX", 3))
             lowerBounds.x = tag.getInt("lowerX");
@@ -265,6 +786,8 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
 
         if (tag.contains("seed", 4))
             random.setSeed(tag.getLong("seed"));
+        if (tag.contains("counter", 4))
+            random.setCounter(tag.getLong("counter"));
 
         if (tag.contains("reserveRadius", 3))
             reserveRadius = tag.getInt("reserveRadius");
@@ -280,7 +803,29 @@ public class SpringSpawnPointGenerator implements SpawnPointGenerator {
         if (tag.contains("worldspawnZ", 3))
             worldSpawn.y = tag.getInt("worldspawnZ");
 
+        // a radius of 0 or less removes the player's override
+        claimRadiiNbt.getKeys().forEach(uuid -> {
+            if (claimRadiiNbt.getInt(uuid) > 0)
+                claimRadii.put(UUID.fromString(uuid), claimRadiiNbt.getInt(uuid));
+            else
+                claimRadii.remove(UUID.fromString(uuid));
+        });
+
+        if (tag.contains("autoTune", 1))
+            autoTune = tag.getBoolean("autoTune");
+        if (tag.contains("targetAttempts", 3))
+            targetAttempts = tag.getInt("targetAttempts");
+        if (tag.contains("minReserveRadius", 3))
+            minReserveRadius = tag.getInt("minReserveRadius");
+        if (tag.contains("maxOverlapRadius", 3))
+            maxOverlapRadius = tag.getInt("maxOverlapRadius");
+        exhausted = false;
+
         if (tag.contains("overlapRadius", 3))
             migrateGrid();
+        if (tag.contains("worldspawnX", 3) || tag.contains("worldspawnZ", 3))
+            migrateDistances();
+        if (tag.contains("reserveRadius", 3) || tag.contains("claimRadii", 10))
+            migrateClaims();
     }
 }
@@ -5,6 +5,8 @@ import net.minecraft.server.world.ServerWorld;
 import org.joml.Vector2i;
 import xyz.verarr.spreadspawnpoints.spawnpoints.SpawnPointGenerator;
 
+import java.util.List;
+
 public class VanillaSpawnPointGenerator implements SpawnPointGenerator {
     private final ServerWorld world;
 
@@ -39,6 +41,14 @@ public class VanillaSpawnPointGenerator implements SpawnPointGenerator {
         );
     }
 
+    /**
+     * Every player spawns at the world spawn.
+     */
+    @Override
+    public boolean sharesSpawnPoints() {
+        return true;
+    }
+
     /**
      * This method is ignored.
      */
@@ -51,6 +61,26 @@ public class VanillaSpawnPointGenerator implements SpawnPointGenerator {
     @Override
     public void remove(Vector2i spawnPoint) {}
 
+    /**
+     * This method is ignored.
+     */
+    @Override
+    public void clear() {}
+
+    /**
+     * Always empty, the world spawn is kept loaded anyway.
+     */
+    @Override
+    public List<Vector2i> peek(int count) {
+        return List.of();
+    }
+
+    /**
+     * This method is ignored.
+     */
+    @Override
+    public void reject(Vector2i spawnPoint) {}
+
     // NBTSerializable stuff (ignored)
     @Override
     public NbtCompound writeNbt() {
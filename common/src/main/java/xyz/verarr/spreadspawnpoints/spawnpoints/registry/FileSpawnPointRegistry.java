@@ -0,0 +1,175 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints.registry;
+
+import org.joml.Vector2i;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A {@link SpawnPointRegistry} stored as an append-only log in a shared
+ * directory, one file per dimension.
+ * <p>
+ * Every change is a fixed-size record tagged with the server that made it.
+ * Writers hold an exclusive {@link FileLock} on the log while appending and
+ * readers a shared one, so any number of servers on the same machine or on
+ * a shared mount that supports locks can use the same directory. Each
+ * server remembers how far it has read and only reads the records appended
+ * since.
+ * <p>
+ * The log is never compacted; it grows by {@value #RECORD_SIZE} bytes per
+ * change.
+ */
+public class FileSpawnPointRegistry implements SpawnPointRegistry {
+    private static final byte ASSIGN = 1;
+    private static final byte RELEASE = 2;
+    private static final byte CLEAR = 3;
+    /**
+     * type, origin, player, x, z
+     */
+    private static final int RECORD_SIZE = 1 + 16 + 16 + 4 + 4;
+
+    private final Path file;
+    private final FileChannel channel;
+    /**
+     * Identifies the records written by this server, which are already in
+     * effect locally.
+     */
+    private final UUID origin = UUID.randomUUID();
+    private long readOffset = 0;
+
+    /**
+     * @param directory shared directory, created if it doesn't exist
+     * @param name      name of the log, unique per dimension
+     * @throws IOException if the log could not be opened
+     */
+    public FileSpawnPointRegistry(Path directory, String name) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(name + ".log");
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public String describe() {
+        return file.toAbsolutePath().toString();
+    }
+
+    @Override
+    public synchronized void poll(Listener listener) throws IOException {
+        ByteBuffer records;
+        try (FileLock ignored = channel.lock(0, Long.MAX_VALUE, true)) {
+            records = readNewRecords();
+        }
+        dispatch(records, listener);
+    }
+
+    @Override
+    public synchronized boolean reserve(UUID player, Vector2i spawnPoint, Listener listener) throws IOException {
+        ByteBuffer records;
+        try (FileLock ignored = channel.lock()) {
+            if (channel.size() - channel.size() % RECORD_SIZE == readOffset) {
+                append(ASSIGN, player, spawnPoint);
+                return true;
+            }
+            records = readNewRecords();
+        }
+        dispatch(records, listener);
+        return false;
+    }
+
+    @Override
+    public synchronized void publish(Map<UUID, Vector2i> spawnPoints) throws IOException {
+        if (spawnPoints.isEmpty()) return;
+        ByteBuffer records = ByteBuffer.allocate(spawnPoints.size() * RECORD_SIZE);
+        spawnPoints.forEach((player, spawnPoint) -> putRecord(records, ASSIGN, player, spawnPoint));
+        try (FileLock ignored = channel.lock()) {
+            append(records.flip());
+        }
+    }
+
+    @Override
+    public synchronized void release(UUID player, Vector2i spawnPoint) throws IOException {
+        try (FileLock ignored = channel.lock()) {
+            append(RELEASE, player, spawnPoint);
+        }
+    }
+
+    @Override
+    public synchronized void clear() throws IOException {
+        try (FileLock ignored = channel.lock()) {
+            append(CLEAR, new UUID(0, 0), new Vector2i());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads all complete records past {@link #readOffset}. Must hold a lock.
+     */
+    private ByteBuffer readNewRecords() throws IOException {
+        long end = channel.size() - channel.size() % RECORD_SIZE;
+        ByteBuffer records = ByteBuffer.allocate(Math.toIntExact(end - readOffset));
+        while (records.hasRemaining()) {
+            if (channel.read(records, readOffset + records.position()) < 0)
+                throw new IOException("Spawnpoint registry " + file + " was truncated");
+        }
+        readOffset = end;
+        return records.flip();
+    }
+
+    private void append(byte type, UUID player, Vector2i spawnPoint) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        putRecord(record, type, player, spawnPoint);
+        append(record.flip());
+    }
+
+    /**
+     * Appends records at the end of the log. Must hold the exclusive lock.
+     * If the records before them were all read, they count as read as well.
+     */
+    private void append(ByteBuffer records) throws IOException {
+        // a record torn by a crash is overwritten
+        long end = channel.size() - channel.size() % RECORD_SIZE;
+        int length = records.remaining();
+        while (records.hasRemaining())
+            channel.write(records, end + records.position());
+        channel.force(false);
+        if (readOffset == end)
+            readOffset = end + length;
+    }
+
+    private void putRecord(ByteBuffer buffer, byte type, UUID player, Vector2i spawnPoint) {
+        buffer.put(type)
+                .putLong(origin.getMostSignificantBits())
+                .putLong(origin.getLeastSignificantBits())
+                .putLong(player.getMostSignificantBits())
+                .putLong(player.getLeastSignificantBits())
+                .putInt(spawnPoint.x)
+                .putInt(spawnPoint.y);
+    }
+
+    private void dispatch(ByteBuffer records, Listener listener) {
+        while (records.remaining() >= RECORD_SIZE) {
+            byte type = records.get();
+            UUID recordOrigin = new UUID(records.getLong(), records.getLong());
+            UUID player = new UUID(records.getLong(), records.getLong());
+            Vector2i spawnPoint = new Vector2i(records.getInt(), records.getInt());
+            if (recordOrigin.equals(origin))
+                continue;
+            switch (type) {
+                case ASSIGN -> listener.assigned(player, spawnPoint);
+                case RELEASE -> listener.released(player, spawnPoint);
+                case CLEAR -> listener.cleared();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package xyz.verarr.spreadspawnpoints.spawnpoints.registry;
+
+import org.joml.Vector2i;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Spawnpoint assignments shared between several servers that spread
+ * players over the same map.
+ * <p>
+ * Every server keeps its own copy of all assignments and exchanges changes
+ * through the registry: local changes are published, and changes made by
+ * other servers are received through {@link #poll(Listener)}. New
+ * spawnpoints are claimed with {@link #reserve(UUID, Vector2i, Listener)},
+ * which only succeeds if the local copy was up to date. The registry does
+ * not look at the spawnpoint itself: callers check it against their local
+ * copy before reserving it, and a successful reservation proves that check
+ * was made against the assignments of all servers.
+ */
+public interface SpawnPointRegistry extends Closeable {
+    /**
+     * Receives changes made by other servers.
+     */
+    interface Listener {
+        void assigned(UUID player, Vector2i spawnPoint);
+
+        void released(UUID player, Vector2i spawnPoint);
+
+        void cleared();
+    }
+
+    /**
+     * @return a human-readable description of where the registry is stored
+     */
+    String describe();
+
+    /**
+     * Receives all changes other servers made since the last call.
+     *
+     * @param listener receives the changes
+     * @throws IOException if the registry could not be read
+     */
+    void poll(Listener listener) throws IOException;
+
+    /**
+     * Atomically assigns a spawnpoint, if no other server made changes since
+     * the last {@link #poll(Listener)}. Otherwise, the changes are passed to
+     * the listener instead and the spawnpoint should be generated again
+     * with them in effect.
+     *
+     * @param player     player the spawnpoint is for
+     * @param spawnPoint spawnpoint to assign
+     * @param listener   receives changes made by other servers
+     * @return true if the spawnpoint was assigned
+     * @throws IOException if the registry could not be accessed
+     */
+    boolean reserve(UUID player, Vector2i spawnPoint, Listener listener) throws IOException;
+
+    /**
+     * Publishes assignments without checking for conflicts, e.g. to share
+     * the spawnpoints assigned before the registry was used or imported
+     * ones.
+     *
+     * @param spawnPoints the assigned spawnpoints, by the UUID of their player
+     * @throws IOException if the registry could not be written
+     */
+    void publish(Map<UUID, Vector2i> spawnPoints) throws IOException;
+
+    /**
+     * Publishes that a spawnpoint was freed.
+     *
+     * @param player     player the spawnpoint was for
+     * @param spawnPoint the freed spawnpoint
+     * @throws IOException if the registry could not be written
+     */
+    void release(UUID player, Vector2i spawnPoint) throws IOException;
+
+    /**
+     * Publishes that all spawnpoints were freed.
+     *
+     * @throws IOException if the registry could not be written
+     */
+    void clear() throws IOException;
+}
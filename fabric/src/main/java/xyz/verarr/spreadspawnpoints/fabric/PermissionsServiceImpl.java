@@ -7,17 +7,15 @@ import org.jetbrains.annotations.NotNull;
 import xyz.verarr.spreadspawnpoints.PermissionsService;
 
 public class PermissionsServiceImpl extends PermissionsService {
-    public static boolean hasPermission(@NotNull ServerPlayerEntity player,
-                                        @NotNull String permission,
-                                        int defaultPermissionLevel) {
-        String permissionNode = String.format("%s.%s", PERMISSION_ROOT, permission);
+    public static boolean checkPermission(@NotNull ServerPlayerEntity player,
+                                          @NotNull String permissionNode,
+                                          int defaultPermissionLevel) {
         return Permissions.check(player, permissionNode, defaultPermissionLevel);
     }
 
     public static boolean hasPermission(@NotNull CommandSource commandSource,
                                         @NotNull String permission,
                                         int defaultPermissionLevel) {
-        String permissionNode = String.format("%s.%s", PERMISSION_ROOT, permission);
-        return Permissions.check(commandSource, permissionNode, defaultPermissionLevel);
+        return Permissions.check(commandSource, getNodeName(permission), defaultPermissionLevel);
     }
 }
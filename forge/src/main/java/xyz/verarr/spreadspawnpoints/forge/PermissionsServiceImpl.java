@@ -1,29 +1,49 @@
 package xyz.verarr.spreadspawnpoints.forge;
 
-import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.command.CommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraftforge.server.permission.PermissionAPI;
+import net.minecraftforge.server.permission.events.PermissionGatherEvent;
+import net.minecraftforge.server.permission.nodes.PermissionNode;
 import net.minecraftforge.server.permission.nodes.PermissionTypes;
 import org.jetbrains.annotations.NotNull;
 import xyz.verarr.spreadspawnpoints.PermissionsService;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class PermissionsServiceImpl extends PermissionsService {
-    public static boolean hasPermission(@NotNull ServerPlayerEntity player,
-                                        @NotNull String permission,
-                                        int defaultPermissionLevel) {
+    /**
+     * Registered nodes by their full name.
+     */
+    private static final Map<String, PermissionNode<Boolean>> nodes = new HashMap<>();
+
+    /**
+     * Registers a node for every permission of the mod, defaulting to the
+     * permission's level.
+     */
+    public static void registerNodes(PermissionGatherEvent.Nodes event) {
+        nodes.clear();
+        PERMISSIONS.forEach((permission, defaultPermissionLevel) -> {
+            PermissionNode<Boolean> node = new PermissionNode<>(PERMISSION_ROOT, permission, PermissionTypes.BOOLEAN,
+                    (player, uuid, context) -> player != null && player.hasPermissionLevel(defaultPermissionLevel));
+            nodes.put(getNodeName(permission), node);
+            event.addNodes(node);
+        });
+    }
+
+    public static boolean checkPermission(@NotNull ServerPlayerEntity player,
+                                          @NotNull String permissionNode,
+                                          int defaultPermissionLevel) {
         if (player.hasPermissionLevel(defaultPermissionLevel)) {
             return true;
         }
 
-        String permissionNode = String.format("%s.%s", PERMISSION_ROOT, permission);
-
-        return PermissionAPI.getRegisteredNodes().stream()
-                .filter(node -> node.getType() == PermissionTypes.BOOLEAN)
-                .filter(node -> node.getNodeName().equals(permissionNode))
-                .anyMatch(node -> (boolean) node.getDefaultResolver().resolve(player, player.getUuid()));
+        PermissionNode<Boolean> node = nodes.get(permissionNode);
+        return node != null && PermissionAPI.getPermission(player, node);
     }
 
-    public static boolean hasPermission(@NotNull ServerCommandSource commandSource,
+    public static boolean hasPermission(@NotNull CommandSource commandSource,
                                         @NotNull String permission,
                                         int defaultPermissionLevel) {
 
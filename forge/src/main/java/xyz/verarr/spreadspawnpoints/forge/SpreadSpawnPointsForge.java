@@ -1,6 +1,7 @@
 package xyz.verarr.spreadspawnpoints.forge;
 
 import dev.architectury.platform.forge.EventBuses;
+import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 
@@ -12,6 +13,8 @@ public final class SpreadSpawnPointsForge {
         // Submit our event bus to let Architectury API register our content on the right time.
         EventBuses.registerModEventBus(SpreadSpawnPoints.MOD_ID, FMLJavaModLoadingContext.get().getModEventBus());
 
+        MinecraftForge.EVENT_BUS.addListener(PermissionsServiceImpl::registerNodes);
+
         // Run our common setup.
         SpreadSpawnPoints.init();
     }
@@ -0,0 +1,154 @@
+package xyz.verarr.spreadspawnpoints.tools;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Streaming access to the binary NBT format, without building a tree of
+ * tags in memory.
+ */
+final class Nbt {
+    static final byte END = 0;
+    static final byte BYTE = 1;
+    static final byte SHORT = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte BYTE_ARRAY = 7;
+    static final byte STRING = 8;
+    static final byte LIST = 9;
+    static final byte COMPOUND = 10;
+    static final byte INT_ARRAY = 11;
+    static final byte LONG_ARRAY = 12;
+
+    private Nbt() {}
+
+    /**
+     * Skips the payload of a tag.
+     *
+     * @param in   input positioned at the payload
+     * @param type type of the tag
+     */
+    static void skip(DataInput in, byte type) throws IOException {
+        switch (type) {
+            case BYTE -> in.skipBytes(1);
+            case SHORT -> in.skipBytes(2);
+            case INT, FLOAT -> in.skipBytes(4);
+            case LONG, DOUBLE -> in.skipBytes(8);
+            case BYTE_ARRAY -> skipFully(in, in.readInt());
+            case STRING -> skipFully(in, in.readUnsignedShort());
+            case INT_ARRAY -> skipFully(in, in.readInt() * 4L);
+            case LONG_ARRAY -> skipFully(in, in.readInt() * 8L);
+            case LIST -> {
+                byte elementType = in.readByte();
+                int length = in.readInt();
+                for (int i = 0; i < length; i++)
+                    skip(in, elementType);
+            }
+            case COMPOUND -> {
+                byte childType;
+                while ((childType = in.readByte()) != END) {
+                    in.readUTF();
+                    skip(in, childType);
+                }
+            }
+            default -> throw new IOException("Unknown NBT tag type " + type);
+        }
+    }
+
+    /**
+     * Copies the payload of a tag.
+     *
+     * @param in   input positioned at the payload
+     * @param out  output to copy the payload to
+     * @param type type of the tag
+     */
+    static void copy(DataInput in, DataOutput out, byte type) throws IOException {
+        switch (type) {
+            case BYTE -> out.writeByte(in.readByte());
+            case SHORT -> out.writeShort(in.readShort());
+            case INT -> out.writeInt(in.readInt());
+            case FLOAT -> out.writeFloat(in.readFloat());
+            case LONG -> out.writeLong(in.readLong());
+            case DOUBLE -> out.writeDouble(in.readDouble());
+            case BYTE_ARRAY -> {
+                int length = in.readInt();
+                out.writeInt(length);
+                copyFully(in, out, length);
+            }
+            case STRING -> out.writeUTF(in.readUTF());
+            case INT_ARRAY -> {
+                int length = in.readInt();
+                out.writeInt(length);
+                copyFully(in, out, length * 4L);
+            }
+            case LONG_ARRAY -> {
+                int length = in.readInt();
+                out.writeInt(length);
+                copyFully(in, out, length * 8L);
+            }
+            case LIST -> {
+                byte elementType = in.readByte();
+                int length = in.readInt();
+                out.writeByte(elementType);
+                out.writeInt(length);
+                for (int i = 0; i < length; i++)
+                    copy(in, out, elementType);
+            }
+            case COMPOUND -> {
+                byte childType;
+                while ((childType = in.readByte()) != END) {
+                    out.writeByte(childType);
+                    out.writeUTF(in.readUTF());
+                    copy(in, out, childType);
+                }
+                out.writeByte(END);
+            }
+            default -> throw new IOException("Unknown NBT tag type " + type);
+        }
+    }
+
+    /**
+     * Reads the payload of a numeric or string tag, skipping any other tag.
+     *
+     * @return the value, or <code>null</code> if the tag is of another type
+     */
+    static Object readScalar(DataInput in, byte type) throws IOException {
+        return switch (type) {
+            case BYTE -> in.readByte();
+            case SHORT -> in.readShort();
+            case INT -> in.readInt();
+            case LONG -> in.readLong();
+            case FLOAT -> in.readFloat();
+            case DOUBLE -> in.readDouble();
+            case STRING -> in.readUTF();
+            default -> {
+                skip(in, type);
+                yield null;
+            }
+        };
+    }
+
+    private static void skipFully(DataInput in, long length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                in.readByte();
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private static void copyFully(DataInput in, DataOutput out, long length) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (length > 0) {
+            int chunk = (int) Math.min(length, buffer.length);
+            in.readFully(buffer, 0, chunk);
+            out.write(buffer, 0, chunk);
+            length -= chunk;
+        }
+    }
+}
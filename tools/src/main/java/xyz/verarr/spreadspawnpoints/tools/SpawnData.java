@@ -0,0 +1,287 @@
+package xyz.verarr.spreadspawnpoints.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and rewrites the spawnpoint data file of a world
+ * (<code>data/spreadspawnpoints.dat</code>) one spawnpoint at a time.
+ * <p>
+ * Two layouts of the spawnpoints are understood: the legacy
+ * <code>playerSpawnPoints</code> compound with a compound per player, and
+ * the <code>playerSpawnPointsPacked</code> long array with
+ * {@value #LONGS_PER_PLAYER} longs per player (the halves of the UUID, x
+ * and z packed into one long, and when the player was last seen). Files
+ * are always written in the packed layout.
+ */
+final class SpawnData {
+    static final int LONGS_PER_PLAYER = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @FunctionalInterface
+    interface Visitor {
+        /**
+         * @param lastSeen when the player was last online in milliseconds
+         *                 since the epoch, 0 if unknown
+         */
+        void visit(UUID player, int x, int z, long lastSeen) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Filter {
+        boolean keep(UUID player, int x, int z, long lastSeen);
+    }
+
+    /**
+     * Everything in the file but the spawnpoints.
+     */
+    static final class Header {
+        int dataVersion = -1;
+        String generator = "";
+        /**
+         * Numeric and string settings of the generator, nested tags omitted.
+         */
+        final Map<String, Object> generatorData = new HashMap<>();
+        long legacyEntries = 0;
+        long packedEntries = 0;
+
+        long entries() {
+            return legacyEntries + packedEntries;
+        }
+
+        int getInt(String key, int fallback) {
+            return generatorData.get(key) instanceof Number number ? number.intValue() : fallback;
+        }
+    }
+
+    private SpawnData() {}
+
+    /**
+     * Streams all spawnpoints in a file to a visitor.
+     *
+     * @param file    file to read
+     * @param visitor receives every spawnpoint
+     * @return the rest of the file
+     */
+    static Header scan(Path file, Visitor visitor) throws IOException {
+        Header header = new Header();
+        try (DataInputStream in = open(file)) {
+            readRoot(in);
+            byte type;
+            while ((type = in.readByte()) != Nbt.END) {
+                String name = in.readUTF();
+                if (name.equals("DataVersion") && type == Nbt.INT) {
+                    header.dataVersion = in.readInt();
+                } else if (name.equals("data") && type == Nbt.COMPOUND) {
+                    scanData(in, header, visitor);
+                } else {
+                    Nbt.skip(in, type);
+                }
+            }
+        }
+        return header;
+    }
+
+    private static void scanData(DataInputStream in, Header header, Visitor visitor) throws IOException {
+        byte type;
+        while ((type = in.readByte()) != Nbt.END) {
+            String name = in.readUTF();
+            switch (name) {
+                case "playerSpawnPoints" -> {
+                    if (type != Nbt.COMPOUND) {
+                        Nbt.skip(in, type);
+                        continue;
+                    }
+                    header.legacyEntries += readLegacy(in, visitor);
+                }
+                case "playerSpawnPointsPacked" -> {
+                    if (type != Nbt.LONG_ARRAY) {
+                        Nbt.skip(in, type);
+                        continue;
+                    }
+                    header.packedEntries += readPacked(in, visitor);
+                }
+                case "spawnPointGenerator" -> {
+                    Object value = Nbt.readScalar(in, type);
+                    if (value instanceof String generator) header.generator = generator;
+                }
+                case "spawnPointGeneratorData" -> {
+                    if (type != Nbt.COMPOUND) {
+                        Nbt.skip(in, type);
+                        continue;
+                    }
+                    byte childType;
+                    while ((childType = in.readByte()) != Nbt.END) {
+                        String key = in.readUTF();
+                        Object value = Nbt.readScalar(in, childType);
+                        if (value != null) header.generatorData.put(key, value);
+                    }
+                }
+                default -> Nbt.skip(in, type);
+            }
+        }
+    }
+
+    private static long readLegacy(DataInputStream in, Visitor visitor) throws IOException {
+        long count = 0;
+        byte type;
+        while ((type = in.readByte()) != Nbt.END) {
+            String key = in.readUTF();
+            if (type != Nbt.COMPOUND) {
+                Nbt.skip(in, type);
+                continue;
+            }
+            int x = 0, z = 0;
+            long lastSeen = 0;
+            byte childType;
+            while ((childType = in.readByte()) != Nbt.END) {
+                String childName = in.readUTF();
+                Object value = Nbt.readScalar(in, childType);
+                switch (childName) {
+                    case "x" -> x = value instanceof Integer i ? i : 0;
+                    case "z" -> z = value instanceof Integer i ? i : 0;
+                    case "lastSeen" -> lastSeen = value instanceof Long l ? l : 0;
+                }
+            }
+            UUID player;
+            try {
+                player = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            visitor.visit(player, x, z, lastSeen);
+            count++;
+        }
+        return count;
+    }
+
+    private static long readPacked(DataInputStream in, Visitor visitor) throws IOException {
+        int length = in.readInt();
+        long count = 0;
+        for (int i = 0; i + LONGS_PER_PLAYER <= length; i += LONGS_PER_PLAYER) {
+            UUID player = new UUID(in.readLong(), in.readLong());
+            long position = in.readLong();
+            long lastSeen = in.readLong();
+            visitor.visit(player, (int) (position >> 32), (int) position, lastSeen);
+            count++;
+        }
+        // trailing longs of an incomplete entry
+        for (int i = length - length % LONGS_PER_PLAYER; i < length; i++)
+            in.readLong();
+        return count;
+    }
+
+    /**
+     * Writes a copy of a file with the spawnpoints in the packed layout,
+     * keeping only those accepted by a filter. The file is read twice, once
+     * to count the spawnpoints kept and once to copy them, so memory use
+     * does not depend on the size of the file.
+     *
+     * @param in     file to read
+     * @param out    file to write, replaced once complete
+     * @param filter which spawnpoints to keep
+     * @return amount of spawnpoints kept
+     */
+    static long rewrite(Path in, Path out, Filter filter) throws IOException {
+        long[] kept = {0};
+        Header header = scan(in, (player, x, z, lastSeen) -> {
+            if (filter.keep(player, x, z, lastSeen)) kept[0]++;
+        });
+        if (header.legacyEntries > 0 && header.packedEntries > 0)
+            throw new IOException("File contains both the legacy and the packed layout");
+        if (kept[0] * LONGS_PER_PLAYER > Integer.MAX_VALUE)
+            throw new IOException("Too many spawnpoints for the packed layout");
+
+        Path temporary = out.resolveSibling(out.getFileName() + ".tmp");
+        try (DataInputStream input = open(in);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                     new GZIPOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE), BUFFER_SIZE))) {
+            output.writeByte(Nbt.COMPOUND);
+            output.writeUTF(readRoot(input));
+            byte type;
+            while ((type = input.readByte()) != Nbt.END) {
+                String name = input.readUTF();
+                output.writeByte(type);
+                output.writeUTF(name);
+                if (name.equals("data") && type == Nbt.COMPOUND) {
+                    rewriteData(input, output, filter, kept[0]);
+                } else {
+                    Nbt.copy(input, output, type);
+                }
+            }
+            output.writeByte(Nbt.END);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, out, StandardCopyOption.REPLACE_EXISTING);
+        return kept[0];
+    }
+
+    private static void rewriteData(DataInputStream in, DataOutputStream out, Filter filter, long kept) throws IOException {
+        boolean written = false;
+        byte type;
+        while ((type = in.readByte()) != Nbt.END) {
+            String name = in.readUTF();
+            boolean legacy = name.equals("playerSpawnPoints") && type == Nbt.COMPOUND;
+            boolean packed = name.equals("playerSpawnPointsPacked") && type == Nbt.LONG_ARRAY;
+            if (!legacy && !packed) {
+                out.writeByte(type);
+                out.writeUTF(name);
+                Nbt.copy(in, out, type);
+                continue;
+            }
+
+            out.writeByte(Nbt.LONG_ARRAY);
+            out.writeUTF("playerSpawnPointsPacked");
+            out.writeInt((int) (kept * LONGS_PER_PLAYER));
+            long[] copied = {0};
+            Visitor writer = (player, x, z, lastSeen) -> {
+                if (!filter.keep(player, x, z, lastSeen)) return;
+                out.writeLong(player.getMostSignificantBits());
+                out.writeLong(player.getLeastSignificantBits());
+                out.writeLong(((long) x << 32) | (z & 0xFFFFFFFFL));
+                out.writeLong(lastSeen);
+                copied[0]++;
+            };
+            if (legacy) readLegacy(in, writer);
+            else readPacked(in, writer);
+            if (copied[0] != kept)
+                throw new IOException("File changed while it was being rewritten");
+            written = true;
+        }
+        if (!written) {
+            out.writeByte(Nbt.LONG_ARRAY);
+            out.writeUTF("playerSpawnPointsPacked");
+            out.writeInt(0);
+        }
+        out.writeByte(Nbt.END);
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+    }
+
+    /**
+     * Reads the type and name of the root compound.
+     *
+     * @return the name of the root compound
+     */
+    private static String readRoot(DataInputStream in) throws IOException {
+        if (in.readByte() != Nbt.COMPOUND)
+            throw new IOException("Not an NBT compound");
+        return in.readUTF();
+    }
+}
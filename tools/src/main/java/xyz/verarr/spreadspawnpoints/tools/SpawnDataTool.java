@@ -0,0 +1,168 @@
+package xyz.verarr.spreadspawnpoints.tools;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Command line tool for the spawnpoint data file of a world
+ * (<code>data/spreadspawnpoints.dat</code>), for use while the server is
+ * stopped.
+ * <p>
+ * The file is streamed rather than loaded, so files with millions of
+ * spawnpoints can be processed with a small heap.
+ */
+public class SpawnDataTool {
+    private static final Pattern UUID_PATTERN = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final String SPRING_GENERATOR = "spreadspawnpoints:spring";
+
+    private static final String USAGE = """
+            Usage:
+              stats <spreadspawnpoints.dat>
+                  Print statistics about the spawnpoints.
+              pack <in.dat> <out.dat>
+                  Convert the spawnpoints to the packed layout.
+              prune <in.dat> <players> <out.dat>
+                  Keep only the spawnpoints of the players whose UUIDs appear in
+                  the players file, e.g. a list of UUIDs or usercache.json.
+                  The output is in the packed layout.""";
+
+    public static void main(String[] args) {
+        try {
+            int status = run(args);
+            if (status != 0) System.exit(status);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int run(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("stats")) {
+            stats(Path.of(args[1]));
+        } else if (args.length == 3 && args[0].equals("pack")) {
+            pack(Path.of(args[1]), Path.of(args[2]));
+        } else if (args.length == 4 && args[0].equals("prune")) {
+            prune(Path.of(args[1]), Path.of(args[2]), Path.of(args[3]));
+        } else {
+            System.err.println(USAGE);
+            return 2;
+        }
+        return 0;
+    }
+
+    private static void stats(Path file) throws IOException {
+        SpawnStats stats = new SpawnStats();
+        long[] lastSeen = {Long.MAX_VALUE, Long.MIN_VALUE, 0};
+        SpawnData.Header header = SpawnData.scan(file, (player, x, z, seen) -> {
+            stats.add(x, z);
+            if (seen == 0) {
+                lastSeen[2]++;
+            } else {
+                lastSeen[0] = Math.min(lastSeen[0], seen);
+                lastSeen[1] = Math.max(lastSeen[1], seen);
+            }
+        });
+
+        System.out.printf("Data version: %d%n", header.dataVersion);
+        System.out.printf("Generator: %s%n", header.generator.isEmpty() ? "unknown" : header.generator);
+        System.out.printf("Layout: %s%n", header.legacyEntries > 0
+                ? header.packedEntries > 0 ? "legacy and packed" : "legacy"
+                : "packed");
+        System.out.printf("Spawnpoints: %d%n", stats.size());
+        if (stats.size() == 0) return;
+
+        System.out.printf("Bounding box: x %d to %d, z %d to %d%n", stats.minX(), stats.maxX(), stats.minZ(), stats.maxZ());
+        int spawnX = header.getInt("worldspawnX", 0), spawnZ = header.getInt("worldspawnZ", 0);
+        System.out.printf("Radius around %d, %d: %.0f%n", spawnX, spawnZ, stats.radius(spawnX, spawnZ));
+        if (lastSeen[1] != Long.MIN_VALUE)
+            System.out.printf("Last seen: %s to %s%n", Instant.ofEpochMilli(lastSeen[0]), Instant.ofEpochMilli(lastSeen[1]));
+        if (lastSeen[2] > 0)
+            System.out.printf("Never seen since activity was tracked: %d%n", lastSeen[2]);
+
+        double[] distances = stats.nearestNeighbourDistances();
+        if (distances.length == 0) return;
+
+        if (header.generator.equals(SPRING_GENERATOR))
+            springViolations(header, stats, distances, spawnX, spawnZ);
+
+        // sorted in place, the unsorted distances are not needed anymore
+        double[] sorted = distances;
+        Arrays.sort(sorted);
+        System.out.printf("Nearest neighbour distance: min %.1f, mean %.1f, max %.1f%n",
+                sorted[0], Arrays.stream(sorted).average().orElse(0), sorted[sorted.length - 1]);
+        System.out.printf("  percentiles: 5%% %.1f, 25%% %.1f, 50%% %.1f, 75%% %.1f, 95%% %.1f%n",
+                percentile(sorted, 5), percentile(sorted, 25), percentile(sorted, 50), percentile(sorted, 75), percentile(sorted, 95));
+        int bucket = 0;
+        for (int i = 0; i < sorted.length; ) {
+            double upper = 1L << bucket;
+            int start = i;
+            while (i < sorted.length && sorted[i] < upper) i++;
+            if (i > start)
+                System.out.printf("  %8.0f to %8.0f: %d%n", bucket == 0 ? 0.0 : upper / 2, upper, i - start);
+            bucket++;
+        }
+    }
+
+    /**
+     * Counts spawnpoints that break the rules of the spring generator with
+     * its saved settings. Per-player reserve radii are not taken into
+     * account.
+     */
+    private static void springViolations(SpawnData.Header header, SpawnStats stats, double[] distances, int spawnX, int spawnZ) {
+        int reserveRadius = header.getInt("reserveRadius", 0);
+        int overlapRadius = header.getInt("overlapRadius", Integer.MAX_VALUE);
+        int worldspawnReserveRadius = header.getInt("worldspawnReserveRadius", 0);
+        int worldspawnOverlapRadius = header.getInt("worldspawnOverlapRadius", 0);
+
+        long tooClose = 0, isolated = 0, nearWorldspawn = 0;
+        for (int i = 0; i < distances.length; i++) {
+            double toWorldspawn = Math.hypot(stats.x(i) - (double) spawnX, stats.z(i) - (double) spawnZ);
+            if (distances[i] < reserveRadius) tooClose++;
+            if (distances[i] >= overlapRadius && toWorldspawn >= worldspawnOverlapRadius) isolated++;
+            if (toWorldspawn < worldspawnReserveRadius) nearWorldspawn++;
+        }
+        System.out.printf("Spring violations: %d closer than %d to another spawnpoint, %d farther than %d from any, %d closer than %d to worldspawn%n",
+                tooClose, reserveRadius, isolated, overlapRadius, nearWorldspawn, worldspawnReserveRadius);
+    }
+
+    private static double percentile(double[] sorted, int percent) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) sorted.length * percent / 100)];
+    }
+
+    private static void pack(Path in, Path out) throws IOException {
+        long kept = SpawnData.rewrite(in, out, (player, x, z, lastSeen) -> true);
+        System.out.printf("Wrote %d spawnpoints to %s%n", kept, out);
+    }
+
+    private static void prune(Path in, Path players, Path out) throws IOException {
+        Set<UUID> keep = new HashSet<>();
+        try (Stream<String> lines = Files.lines(players, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                Matcher matcher = UUID_PATTERN.matcher(line);
+                while (matcher.find())
+                    keep.add(UUID.fromString(matcher.group()));
+            });
+        }
+        if (keep.isEmpty())
+            throw new IOException("No UUIDs found in " + players);
+
+        long[] total = {0};
+        long kept = SpawnData.rewrite(in, out, (player, x, z, lastSeen) -> {
+            total[0]++;
+            return keep.contains(player);
+        });
+        // the filter sees every spawnpoint twice, once per pass
+        System.out.printf("Kept %d of %d spawnpoints, wrote %s%n", kept, total[0] / 2, out);
+    }
+}
@@ -0,0 +1,153 @@
+package xyz.verarr.spreadspawnpoints.tools;
+
+import java.util.Arrays;
+
+/**
+ * Positions of all spawnpoints in primitive arrays, with nearest neighbour
+ * search on a uniform grid. Takes 8 bytes per spawnpoint, and up to 32
+ * during the search.
+ */
+final class SpawnStats {
+    private int[] xs = new int[1024];
+    private int[] zs = new int[1024];
+    private int size = 0;
+
+    void add(int x, int z) {
+        if (size == xs.length) {
+            int capacity = Math.max(size + 1, (int) Math.min(Integer.MAX_VALUE - 8, size * 3L / 2));
+            xs = Arrays.copyOf(xs, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+        }
+        xs[size] = x;
+        zs[size] = z;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int x(int i) {
+        return xs[i];
+    }
+
+    int z(int i) {
+        return zs[i];
+    }
+
+    int minX() {
+        return Arrays.stream(xs, 0, size).min().orElse(0);
+    }
+
+    int maxX() {
+        return Arrays.stream(xs, 0, size).max().orElse(0);
+    }
+
+    int minZ() {
+        return Arrays.stream(zs, 0, size).min().orElse(0);
+    }
+
+    int maxZ() {
+        return Arrays.stream(zs, 0, size).max().orElse(0);
+    }
+
+    /**
+     * @return greatest distance of any spawnpoint from a point
+     */
+    double radius(int centerX, int centerZ) {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            long dx = xs[i] - (long) centerX, dz = zs[i] - (long) centerZ;
+            max = Math.max(max, dx * dx + dz * dz);
+        }
+        return Math.sqrt(max);
+    }
+
+    /**
+     * Computes the distance of every spawnpoint to its nearest neighbour.
+     * The spawnpoints are bucketed into a grid of about one spawnpoint per
+     * cell, sorted by cell, and each search visits rings of cells outwards
+     * until no closer neighbour is possible. This reorders the spawnpoints.
+     *
+     * @return distance to the nearest neighbour of the spawnpoint at each
+     * index, empty if there are fewer than two spawnpoints
+     */
+    double[] nearestNeighbourDistances() {
+        if (size < 2) return new double[0];
+        int minX = minX(), minZ = minZ();
+        long width = (long) maxX() - minX + 1, height = (long) maxZ() - minZ + 1;
+        long cell = Math.max(1, (long) Math.sqrt((double) width * height / size));
+        long columns = width / cell + 1, rows = height / cell + 1;
+        while (columns * rows > Integer.MAX_VALUE) {
+            cell *= 2;
+            columns = width / cell + 1;
+            rows = height / cell + 1;
+        }
+
+        // cell index in the upper half, spawnpoint index in the lower half
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++)
+            order[i] = (cellOf(xs[i], minX, cell) * rows + cellOf(zs[i], minZ, cell)) << 32 | i;
+        Arrays.sort(order);
+        int[] sortedX = new int[size], sortedZ = new int[size];
+        long[] cells = new long[size];
+        for (int i = 0; i < size; i++) {
+            int index = (int) order[i];
+            sortedX[i] = xs[index];
+            sortedZ[i] = zs[index];
+            cells[i] = order[i] >>> 32;
+        }
+        // the order of the spawnpoints doesn't matter, keep the sorted one
+        xs = sortedX;
+        zs = sortedZ;
+        order = null;
+
+        double[] distances = new double[size];
+        for (int i = 0; i < size; i++) {
+            long cellX = cellOf(xs[i], minX, cell), cellZ = cellOf(zs[i], minZ, cell);
+            long best = Long.MAX_VALUE;
+            for (long ring = 0; ; ring++) {
+                // walk only the border of the ring
+                for (long cx = cellX - ring; cx <= cellX + ring; cx++) {
+                    best = nearestInCell(i, cells, cx, cellZ - ring, columns, rows, best);
+                    if (ring > 0)
+                        best = nearestInCell(i, cells, cx, cellZ + ring, columns, rows, best);
+                }
+                for (long cz = cellZ - ring + 1; cz <= cellZ + ring - 1; cz++) {
+                    best = nearestInCell(i, cells, cellX - ring, cz, columns, rows, best);
+                    best = nearestInCell(i, cells, cellX + ring, cz, columns, rows, best);
+                }
+                // anything beyond this ring is at least ring * cell away
+                long reach = ring * cell;
+                if (best <= reach * reach || (ring > columns && ring > rows)) break;
+            }
+            distances[i] = Math.sqrt(best);
+        }
+        return distances;
+    }
+
+    private long nearestInCell(int i, long[] cells, long cellX, long cellZ, long columns, long rows, long best) {
+        if (cellX < 0 || cellX >= columns || cellZ < 0 || cellZ >= rows) return best;
+        long key = cellX * rows + cellZ;
+        for (int j = lowerBound(cells, key); j < size && cells[j] == key; j++) {
+            if (j == i) continue;
+            long dx = xs[j] - (long) xs[i], dz = zs[j] - (long) zs[i];
+            best = Math.min(best, dx * dx + dz * dz);
+        }
+        return best;
+    }
+
+    private static long cellOf(int coordinate, int min, long cell) {
+        return (coordinate - (long) min) / cell;
+    }
+
+    private static int lowerBound(long[] sorted, long key) {
+        int low = 0, high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < key) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+}